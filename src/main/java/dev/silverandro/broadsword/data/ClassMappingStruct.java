@@ -13,6 +13,10 @@ import java.util.Map;
 /**
  * Represents a class, used for class data lookup during remapping. Consider use of {@link ClassStructExtractor} for highly
  * efficient creation of these structs and their data.
+ *
+ * @param superAndInterfaceClasses The super class first, {@code java/lang/Object} if the class has none, then every
+ *                                 interface it directly implements
+ * @param methodsAndDesc The name of every method the class declares, to its descriptor
  */
 public record ClassMappingStruct(List<UTF8Container> superAndInterfaceClasses, Map<UTF8Container, UTF8Container> methodsAndDesc) {
 
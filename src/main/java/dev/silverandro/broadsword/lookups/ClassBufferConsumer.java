@@ -0,0 +1,25 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.lookups;
+
+import dev.silverandro.broadsword.tools.OutputBufferPool;
+import dev.silverandro.broadsword.tools.UTF8Container;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A function provided to the remappers that receives each remapped class as a buffer from an {@link OutputBufferPool},
+ * instead of writing it to an {@link OutputStreamFactory stream}.
+ */
+@FunctionalInterface
+public interface ClassBufferConsumer {
+    /**
+     * Handles a remapped class. The buffer goes back to the pool once this returns, so it must not be kept.
+     * @param className The new name of the class this data belongs to.
+     * @param classFile The class file, between the position and limit of the buffer
+     */
+    void acceptClass(UTF8Container className, ByteBuffer classFile) throws IOException;
+}
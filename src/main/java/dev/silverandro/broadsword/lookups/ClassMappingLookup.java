@@ -7,6 +7,7 @@ package dev.silverandro.broadsword.lookups;
 import dev.silverandro.broadsword.data.ClassMappingStruct;
 import dev.silverandro.broadsword.mappings.MappingsSet;
 import dev.silverandro.broadsword.tools.ClassFileRemapper;
+import dev.silverandro.broadsword.tools.TrueClassFileRemapper;
 import dev.silverandro.broadsword.tools.UTF8Container;
 
 /**
@@ -19,6 +20,23 @@ public interface ClassMappingLookup {
     /**
      * Handles the request for class info from the remapper.
      * @param className The name of the class that information is being requested on. This is in the origin namespace.
+     * @return The class, or {@code null} if nothing is known about it, in which case it is searched as if it had no
+     * methods and no parents
      */
     ClassMappingStruct lookupClassInfo(UTF8Container className);
+
+    /**
+     * Opts in to remapping field and method references made through a class that only inherits the member, such as a
+     * call to a mapped parent method on a child class, or a mapped parent field read through a child class. For every
+     * such reference without a mapping of its own, the class it is made through is then requested, followed by its
+     * parents as needed. That class may be any class the remapped class refers to, including library classes outside
+     * the input, which can return {@code null}. Fields are looked up by both remappers, methods only by
+     * {@link TrueClassFileRemapper}.
+     * <p>
+     * Off by default. {@link MappingsSet#propagateMethods} already covers method references made through the input
+     * classes, without any requests during remapping.
+     */
+    default boolean lookupReferenceOwners() {
+        return false;
+    }
 }
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.tools.UTF8Container;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Flattens two chained sets into one, see {@link MappingsSet#compose(MappingsSet, MappingsSet)}.
+ * <p>
+ * Every entry of the first set is followed through the second. Entries only the second set has are carried over if
+ * the name they map is what the first set leaves in the middle namespace. To find their source names, the class and
+ * package mappings of the first set are inverted once.
+ */
+final class Composition {
+    private final MappingsSet first;
+    private final MappingsSet second;
+    private final CustomMappingsSet result;
+    // Takes names in the middle namespace back to the source namespace
+    private final CustomMappingsSet back = new CustomMappingsSet();
+
+    private Composition(MappingsSet first, MappingsSet second) {
+        this.first = first;
+        this.second = second;
+        this.result = new CustomMappingsSet(first.supportsFieldTypes());
+        first.forEachClass((source, middle) -> back.putClass(middle, source));
+        first.forEachPackage((source, middle) -> back.putPackage(middle, source));
+    }
+
+    static CustomMappingsSet compose(MappingsSet first, MappingsSet second) {
+        var composition = new Composition(first, second);
+        composition.classes();
+        composition.members(first::forEachField, second::forEachField, true);
+        composition.members(first::forEachMethod, second::forEachMethod, false);
+        names(first::forEachModule, second::forEachModule,
+                second::remapModule, first::remapModuleOrNull, composition.result::putModule);
+        names(first::forEachPackage, second::forEachPackage,
+                second::remapPackage, first::remapPackageOrNull, composition.result::putPackage);
+        return composition.result;
+    }
+
+    private void classes() {
+        first.forEachClass((source, middle) -> result.putClass(source, second.remapClass(middle)));
+        second.forEachClass((middle, target) -> {
+            // Also catches classes the first set only relocates by package
+            var source = back.remapClass(middle);
+            if (first.remapClass(source).equals(middle)) {
+                result.putClass(source, target);
+            }
+        });
+    }
+
+    private void members(
+            Consumer<BiConsumer<MappingsSet.OwnedType, UTF8Container>> firstMembers,
+            Consumer<BiConsumer<MappingsSet.OwnedType, UTF8Container>> secondMembers,
+            boolean fields
+    ) {
+        // Members of the middle namespace that were already followed through from the first set, by owner and name
+        // only if the first set had no descriptor for them
+        Set<MappingsSet.OwnedType> followed = new HashSet<>();
+        var secondTyped = !fields || second.supportsFieldTypes();
+        // Fields of a typed second set by owner and name, for the fields of an untyped first set
+        Map<MappingsSet.OwnedType, UTF8Container> secondByName = new HashMap<>();
+        if (fields && secondTyped && !first.supportsFieldTypes()) {
+            secondMembers.accept((key, target) -> secondByName.putIfAbsent(untyped(key), target));
+        }
+
+        firstMembers.accept((key, middleName) -> {
+            var middleOwner = first.remapClass(key.owner());
+            var middleDesc = key.desc() == null ? null : first.translateDescriptor(key.desc());
+            UTF8Container target;
+            if (!fields) {
+                target = second.remapMethodOrNull(middleOwner, middleName, middleDesc);
+            } else if (middleDesc == null && secondTyped) {
+                target = secondByName.get(new MappingsSet.OwnedType(middleOwner, middleName, null));
+            } else {
+                target = second.remapFieldOrNull(middleOwner, middleName, middleDesc);
+            }
+            if (target == null) target = middleName;
+
+            put(fields, key.owner(), key.name(), key.desc(), target);
+            followed.add(new MappingsSet.OwnedType(middleOwner, middleName, secondTyped ? middleDesc : null));
+        });
+
+        secondMembers.accept((key, target) -> {
+            if (followed.contains(key) || key.desc() != null && followed.contains(untyped(key))) return;
+            var source = back.remapClass(key.owner());
+            if (!first.remapClass(source).equals(key.owner())) return;
+            var sourceDesc = key.desc() == null ? null : back.translateDescriptor(key.desc());
+            // If the first set renames the member, the name in the middle namespace belongs to something else
+            var renamed = fields
+                    ? first.remapFieldOrNull(source, key.name(), sourceDesc)
+                    : first.remapMethodOrNull(source, key.name(), sourceDesc);
+            if (renamed == null) {
+                put(fields, source, key.name(), sourceDesc, target);
+            }
+        });
+    }
+
+    private static MappingsSet.OwnedType untyped(MappingsSet.OwnedType key) {
+        return new MappingsSet.OwnedType(key.owner(), key.name(), null);
+    }
+
+    private void put(boolean field, UTF8Container owner, UTF8Container name, UTF8Container desc, UTF8Container target) {
+        if (field) {
+            result.putField(owner, name, desc, target);
+        } else {
+            result.putMethod(owner, name, desc, target);
+        }
+    }
+
+    // Modules and packages are composed by their exact names
+    private static void names(
+            Consumer<BiConsumer<UTF8Container, UTF8Container>> firstNames,
+            Consumer<BiConsumer<UTF8Container, UTF8Container>> secondNames,
+            Function<UTF8Container, UTF8Container> secondRemap,
+            Function<UTF8Container, UTF8Container> firstRemapOrNull,
+            BiConsumer<UTF8Container, UTF8Container> put
+    ) {
+        Set<UTF8Container> middles = new HashSet<>();
+        firstNames.accept((source, middle) -> {
+            put.accept(source, secondRemap.apply(middle));
+            middles.add(middle);
+        });
+        secondNames.accept((middle, target) -> {
+            if (!middles.contains(middle) && firstRemapOrNull.apply(middle) == null) {
+                put.accept(middle, target);
+            }
+        });
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.tools.UTF8Container;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link CustomMappingsSet} alternative that any number of threads can fill at the same time, such as several parsers
+ * or generators each contributing part of the mappings. Insertion only locks the bin being written, and lookups never
+ * lock. Once loading is done, {@link #freeze()} turns it into the read optimized form.
+ * <p>
+ * Lookups made while other threads are still inserting see each entry either fully or not at all.
+ */
+public final class ConcurrentMappingsSet extends MappingsSet {
+    private final boolean fieldTypes;
+    private final ConcurrentHashMap<UTF8Container, UTF8Container> classes = new ConcurrentHashMap<>(1024);
+    private final ConcurrentHashMap<OwnedType, UTF8Container> fields = new ConcurrentHashMap<>(2048);
+    private final ConcurrentHashMap<OwnedType, UTF8Container> methods = new ConcurrentHashMap<>(2048);
+    private final ConcurrentHashMap<UTF8Container, UTF8Container> modules = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<UTF8Container, UTF8Container> packages = new ConcurrentHashMap<>();
+
+    private final AtomicInteger classModifications = new AtomicInteger();
+    private final AtomicInteger packageModifications = new AtomicInteger();
+    private final AtomicInteger memberModifications = new AtomicInteger();
+    // Swapped as one so that a reader never pairs a trie with the wrong version
+    private volatile VersionedTrie packageTrie = new VersionedTrie(0, PackageTrie.EMPTY);
+
+    public ConcurrentMappingsSet() {
+        this(true);
+    }
+
+    /**
+     * @param fieldTypes If fields are keyed by their descriptor, {@code false} ignores the descriptor of every field
+     */
+    public ConcurrentMappingsSet(boolean fieldTypes) {
+        this.fieldTypes = fieldTypes;
+    }
+
+    @Override
+    protected boolean supportsFieldTypes() {
+        return fieldTypes;
+    }
+
+    @Override
+    public void putClass(UTF8Container originalName, UTF8Container newName) {
+        classes.put(originalName, newName);
+        classModifications.incrementAndGet();
+    }
+
+    @Override
+    public void putField(UTF8Container parentClass, UTF8Container originalName, UTF8Container desc, UTF8Container newName) {
+        fields.put(new OwnedType(parentClass, originalName, fieldTypes ? desc : null), newName);
+        memberModifications.incrementAndGet();
+    }
+
+    @Override
+    public void putMethod(UTF8Container parentClass, UTF8Container originalName, UTF8Container desc, UTF8Container newName) {
+        methods.put(new OwnedType(parentClass, originalName, desc), newName);
+        memberModifications.incrementAndGet();
+    }
+
+    @Override
+    public void putModule(UTF8Container originalName, UTF8Container newName) {
+        modules.put(originalName, newName);
+    }
+
+    @Override
+    public void putPackage(UTF8Container originalName, UTF8Container newName) {
+        packages.put(originalName, newName);
+        packageModifications.incrementAndGet();
+    }
+
+    @Override
+    void putBatch(MappingsBatch batch, MappingsSet descriptors) {
+        batch.putEach(this, descriptors);
+    }
+
+    @Override
+    public void removeClass(UTF8Container originalName) {
+        classes.remove(originalName);
+        classModifications.incrementAndGet();
+    }
+
+    @Override
+    public void removeField(UTF8Container parentClass, UTF8Container originalName, UTF8Container desc) {
+        fields.remove(new OwnedType(parentClass, originalName, fieldTypes ? desc : null));
+        memberModifications.incrementAndGet();
+    }
+
+    @Override
+    public void removeMethod(UTF8Container parentClass, UTF8Container originalName, UTF8Container desc) {
+        methods.remove(new OwnedType(parentClass, originalName, desc));
+        memberModifications.incrementAndGet();
+    }
+
+    @Override
+    public void removeModule(UTF8Container originalName) {
+        modules.remove(originalName);
+    }
+
+    @Override
+    public void removePackage(UTF8Container originalName) {
+        packages.remove(originalName);
+        packageModifications.incrementAndGet();
+    }
+
+    @Override
+    protected int classVersion() {
+        return classModifications.get() + packageModifications.get();
+    }
+
+    @Override
+    protected int memberVersion() {
+        return memberModifications.get();
+    }
+
+    @Override
+    PackageTrie packageTrie() {
+        var current = packageTrie;
+        var version = packageModifications.get();
+        if (current.version != version) {
+            // Read the version before building, a concurrent write then only causes a harmless extra rebuild
+            current = new VersionedTrie(version, PackageTrie.of(this));
+            packageTrie = current;
+        }
+        return current.trie;
+    }
+
+    // The probes are only equal to the stored key types, which is all ConcurrentHashMap needs to find an entry
+
+    @Override
+    protected UTF8Container findClass(UTF8Container current) {
+        return classes.get(current);
+    }
+
+    @Override
+    protected UTF8Container findClass(NameProbe current) {
+        return classes.get(current);
+    }
+
+    @Override
+    public UTF8Container remapFieldOrNull(UTF8Container parentClass, UTF8Container name, UTF8Container desc) {
+        return fields.get(new OwnedType(parentClass, name, fieldTypes ? desc : null));
+    }
+
+    @Override
+    public UTF8Container remapFieldOrNull(MemberProbe field) {
+        field.ignoreDesc = !fieldTypes;
+        try {
+            return fields.get(field);
+        } finally {
+            field.ignoreDesc = false;
+        }
+    }
+
+    @Override
+    public UTF8Container remapMethodOrNull(UTF8Container parentClass, UTF8Container name, UTF8Container desc) {
+        return methods.get(new OwnedType(parentClass, name, desc));
+    }
+
+    @Override
+    public UTF8Container remapMethodOrNull(MemberProbe method) {
+        return methods.get(method);
+    }
+
+    @Override
+    public UTF8Container remapModuleOrNull(UTF8Container current) {
+        return modules.get(current);
+    }
+
+    @Override
+    public UTF8Container remapPackageOrNull(UTF8Container current) {
+        return packages.get(current);
+    }
+
+    @Override
+    public void forEachClass(BiConsumer<UTF8Container, UTF8Container> action) {
+        classes.forEach(action);
+    }
+
+    @Override
+    public void forEachField(BiConsumer<OwnedType, UTF8Container> action) {
+        fields.forEach(action);
+    }
+
+    @Override
+    public void forEachMethod(BiConsumer<OwnedType, UTF8Container> action) {
+        methods.forEach(action);
+    }
+
+    @Override
+    public void forEachModule(BiConsumer<UTF8Container, UTF8Container> action) {
+        modules.forEach(action);
+    }
+
+    @Override
+    public void forEachPackage(BiConsumer<UTF8Container, UTF8Container> action) {
+        packages.forEach(action);
+    }
+
+    private record VersionedTrie(int version, PackageTrie trie) {}
+}
@@ -3,23 +3,71 @@ package dev.silverandro.broadsword.mappings;
 import dev.silverandro.broadsword.tools.UTF8Container;
 
 public final class CustomMappingsSet extends MappingsSet {
+    private final boolean fieldTypes;
+
+    public CustomMappingsSet() {
+        this(true);
+    }
+
+    /**
+     * @param fieldTypes If fields are keyed by their descriptor, {@code false} ignores the descriptor of every field
+     */
+    public CustomMappingsSet(boolean fieldTypes) {
+        this.fieldTypes = fieldTypes;
+    }
+
+    @Override
+    protected boolean supportsFieldTypes() {
+        return fieldTypes;
+    }
+
+    @Override
     public void putClass(UTF8Container originalName, UTF8Container newName) {
-        classMapping.put(originalName, newName);
+        super.putClass(originalName, newName);
     }
 
+    @Override
     public void putField(UTF8Container parentClass, UTF8Container originalName, UTF8Container desc, UTF8Container newName) {
-        fieldMapping.put(new OwnedType(parentClass, originalName, desc), newName);
+        super.putField(parentClass, originalName, desc, newName);
     }
 
+    @Override
     public void putMethod(UTF8Container parentClass, UTF8Container originalName, UTF8Container desc, UTF8Container newName) {
-        methodMapping.put(new OwnedType(parentClass, originalName, desc), newName);
+        super.putMethod(parentClass, originalName, desc, newName);
     }
 
+    @Override
     public void putModule(UTF8Container originalName, UTF8Container newName) {
-        moduleMapping.put(originalName, newName);
+        super.putModule(originalName, newName);
     }
 
+    @Override
     public void putPackage(UTF8Container originalName, UTF8Container newName) {
-        packageMapping.put(originalName, newName);
+        super.putPackage(originalName, newName);
+    }
+
+    @Override
+    public void removeClass(UTF8Container originalName) {
+        super.removeClass(originalName);
+    }
+
+    @Override
+    public void removeField(UTF8Container parentClass, UTF8Container originalName, UTF8Container desc) {
+        super.removeField(parentClass, originalName, desc);
+    }
+
+    @Override
+    public void removeMethod(UTF8Container parentClass, UTF8Container originalName, UTF8Container desc) {
+        super.removeMethod(parentClass, originalName, desc);
+    }
+
+    @Override
+    public void removeModule(UTF8Container originalName) {
+        super.removeModule(originalName);
+    }
+
+    @Override
+    public void removePackage(UTF8Container originalName) {
+        super.removePackage(originalName);
     }
 }
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.tools.UTF8Container;
+
+/**
+ * A bounded, direct mapped cache of remapped descriptors or signatures. Each slot holds a single immutable entry and colliding
+ * descriptors simply replace each other, so there is no locking and no unbounded growth. Racing writers can only lose
+ * an entry, never expose a half written one.
+ */
+final class DescriptorCache {
+    private static final int SIZE = 4096;
+
+    // The version of the class mappings this cache was filled from
+    final int version;
+    private final Entry[] entries = new Entry[SIZE];
+
+    DescriptorCache(int version) {
+        this.version = version;
+    }
+
+    UTF8Container get(UTF8Container descriptor) {
+        var entry = entries[descriptor.hashCode() & (SIZE - 1)];
+        if (entry != null && entry.descriptor.equals(descriptor)) {
+            // Unchanged results hand back the caller's own instance, not whichever equal one was cached first
+            return entry.remapped == entry.descriptor ? descriptor : entry.remapped;
+        }
+        return null;
+    }
+
+    void put(UTF8Container descriptor, UTF8Container remapped) {
+        // Descriptors read straight out of a class file are views, which must not outlive it
+        var key = descriptor.compact();
+        entries[descriptor.hashCode() & (SIZE - 1)] = new Entry(key, remapped == descriptor ? key : remapped);
+    }
+
+    private record Entry(UTF8Container descriptor, UTF8Container remapped) {}
+}
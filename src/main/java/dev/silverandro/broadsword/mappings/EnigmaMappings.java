@@ -6,135 +6,230 @@ package dev.silverandro.broadsword.mappings;
 
 import dev.silverandro.broadsword.tools.UTF8Container;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.SimpleFileVisitor;
-import java.nio.file.attribute.BasicFileAttributes;
-
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Enigma mappings, either a single {@code .mapping} file or a directory tree of them as used by Yarn.
+ * <p>
+ * Directories are parsed one file per task on the common fork join pool, with a byte level parser that tracks class
+ * nesting by indentation. The per file results are merged in path order once every file is done.
+ */
 public final class EnigmaMappings extends MappingsSet {
+    private static final byte[] CLASS = "CLASS".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FIELD = "FIELD".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] METHOD = "METHOD".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] ARG = "ARG".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] COMMENT = "COMMENT".getBytes(StandardCharsets.UTF_8);
+
     public void parseFromDirectory(Path path) throws IOException {
-        Files.walkFileTree(path, new SimpleFileVisitor<>() {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(path)) {
+            files = walk.filter(file -> file.getFileName().toString().endsWith(".mapping"))
+                    .sorted()
+                    .toList();
+        }
+
+        var batches = files.parallelStream()
+                .map(file -> {
+                    try {
+                        return parse(Files.readAllBytes(file));
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                })
+                .toList();
+        for (var batch : batches) {
+            batch.applyTo(this);
+        }
+    }
+
+    /**
+     * Indexes the directory without parsing it, so that each file is only parsed once something in it is looked up.
+     * Prefer this when remapping only touches a small part of a large mappings tree.
+     */
+    public static LazyEnigmaMappings lazyFromDirectory(Path path) throws IOException {
+        return new LazyEnigmaMappings(path);
+    }
+
+    /**
+     * Reads every {@code .mapping} entry of a zip or jar from the stream. This thread inflates the entries one after
+     * another while the entries already read are parsed on the common fork join pool. Nothing is written to disk, and
+     * the stream is not closed.
+     */
+    public void parseFromZip(InputStream input) throws IOException {
+        var tasks = new ArrayList<ForkJoinTask<MappingsBatch>>();
+        // Closing the zip stream releases its inflater, but the source belongs to the caller
+        try (var zip = new ZipInputStream(new FilterInputStream(input) {
             @Override
-            public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
-                if (path.getFileName().toString().endsWith(".mapping")) {
-                    parseMappingsFile(path.toFile());
-                }
-                return FileVisitResult.CONTINUE;
+            public void close() {}
+        })) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (entry.isDirectory() || !entry.getName().endsWith(".mapping")) continue;
+                var data = zip.readAllBytes();
+                tasks.add(ForkJoinPool.commonPool().submit(() -> parse(data)));
             }
-        });
+        }
+        for (var task : tasks) {
+            task.join().applyTo(this);
+        }
     }
 
-    public void parseMappingsFile(File file) {
-        new FileParser().loadMappingsFile(file);
+    public void parseFromZip(ReadableByteChannel channel) throws IOException {
+        parseFromZip(Channels.newInputStream(channel));
     }
 
-    private class FileParser {
-        String currentBeforeClass = null;
-        String currentAfterClass = null;
+    /**
+     * Reads a single {@code .mapping} file from the stream, which is not closed.
+     */
+    public void parseMappings(InputStream input) throws IOException {
+        parse(input.readAllBytes()).applyTo(this);
+    }
 
-        public void loadMappingsFile(File file) {
-            try (var input = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
-                int prevTrim = 0;
-                String line = input.readLine();
-                while (line != null) {
-                    var clean = line.trim();
-                    var trimAmount = line.length() - clean.length();
+    public void parseMappingsFile(File file) {
+        try {
+            parse(Files.readAllBytes(file.toPath())).applyTo(this);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
 
-                    if (parseMappingsLine(clean, trimAmount - prevTrim)) {
-                        prevTrim = trimAmount;
-                    }
+    /**
+     * Parses a whole {@code .mapping} file. Safe to call from several threads at once.
+     */
+    static MappingsBatch parse(byte[] data) {
+        var parser = new FileParser(data);
+        int line = 0;
+        while (line < data.length) {
+            int end = indexOf(data, line, data.length, (byte) '\n');
+            int contentEnd = end > line && data[end - 1] == '\r' ? end - 1 : end;
+            parser.parseLine(line, contentEnd);
+            line = end + 1;
+        }
+        return parser.batch;
+    }
 
-                    line = input.readLine();
-                }
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+    private static int indexOf(byte[] data, int from, int end, byte separator) {
+        for (int i = from; i < end; i++) {
+            if (data[i] == separator) return i;
         }
+        return end;
+    }
 
-        private boolean parseMappingsLine(String line, int trimDiff) {
-            if (line.startsWith("COMMENT")) return false;
-
-            if (line.startsWith("CLASS")) {
-                var splice = line.substring("CLASS ".length());
-                var splitIndex = splice.indexOf(' ');
-
-                String before;
-                String after;
-                if (splitIndex == -1) {
-                    before = splice;
-                    after = before;
-                } else {
-                    before = splice.substring(0, splitIndex);
-                    after = splice.substring(splitIndex + 1);
-                }
-
-                if (trimDiff > 0) {
-                    before = currentBeforeClass + "$" + before;
-                    after = currentAfterClass + "$" + after;
-                } else if (trimDiff == 0 && currentBeforeClass != null) {
-                    var remB = currentBeforeClass.lastIndexOf('$');
-                    var remA = currentAfterClass.lastIndexOf('$');
-                    before = currentBeforeClass.substring(0, remB) + "$" + before;
-                    after = currentAfterClass.substring(0, remA) + "$" + after;
-                } else if (trimDiff < 0) {
-                    while (trimDiff++ < 0) {
-                        var remB = currentBeforeClass.lastIndexOf('$');
-                        var remA = currentAfterClass.lastIndexOf('$');
-                        before = currentBeforeClass.substring(0, remB);
-                        after = currentAfterClass.substring(0, remA);
-                    }
-                    before = currentBeforeClass + "$" + before;
-                    after = currentAfterClass + "$" + after;
-                }
+    private static final class FileParser {
+        private final byte[] data;
+        private final MappingsBatch batch = new MappingsBatch();
+
+        // The enclosing classes of the current line, indexed by indentation
+        private UTF8Container[] beforeClasses = new UTF8Container[8];
+        private UTF8Container[] afterClasses = new UTF8Container[8];
+        private int classDepth;
 
-                currentBeforeClass = before;
-                currentAfterClass = after;
-                classMapping.put(new UTF8Container(before), new UTF8Container(after));
-                return true;
-            } else if (line.startsWith("FIELD")) {
-                var splice = line.substring("FIELD ".length());
+        // Bounds of the space separated tokens of the current line
+        private final int[] tokenStarts = new int[4];
+        private final int[] tokenEnds = new int[4];
+        private int tokenCount;
 
-                var splitIndex = splice.indexOf(' ');
+        FileParser(byte[] data) {
+            this.data = data;
+        }
 
-                var origName = splice.substring(0, splitIndex);
-                var after = splice.substring(splitIndex + 1);
+        void parseLine(int start, int end) {
+            int depth = 0;
+            while (start + depth < end && (data[start + depth] == '\t' || data[start + depth] == ' ')) depth++;
+            if (start + depth == end) return;
+            tokenize(start + depth, end);
+
+            if (isKeyword(COMMENT) || isKeyword(ARG)) return;
+
+            if (isKeyword(CLASS)) {
+                readClass(depth);
+            } else if (isKeyword(FIELD)) {
+                // FIELD original [mapped] desc
+                if (tokenCount < 4 || depth == 0 || depth > classDepth) return;
+                batch.addField(beforeClasses[depth - 1], token(1), token(3), token(2));
+            } else if (isKeyword(METHOD)) {
+                // METHOD original [mapped] desc
+                if (tokenCount < 4 || depth == 0 || depth > classDepth) return;
+                if (data[tokenStarts[1]] == '<') return;
+                batch.addMethod(beforeClasses[depth - 1], token(1), token(3), token(2));
+            } else {
+                throw new IllegalStateException("Don't know how to handle mapping line \"" + new String(data, start, end - start, StandardCharsets.UTF_8) + "\"");
+            }
+        }
 
-                var splitIndex2 = after.indexOf(' ');
-                if (splitIndex2 != -1) {
-                    var newName = after.substring(0, splitIndex2);
-                    var desc = after.substring(splitIndex2 + 1);
+        // CLASS original [mapped], nested classes only give the part after the $ of their enclosing class
+        private void readClass(int depth) {
+            if (depth > classDepth) {
+                throw new IllegalStateException("Class nested deeper than its enclosing class");
+            }
+            classDepth = depth;
 
-                    fieldMapping.put(OwnedType.of(currentBeforeClass, origName, desc), new UTF8Container(newName));
-                }
-                return false;
-            } else if (line.startsWith("METHOD")) {
-                var splice = line.substring("METHOD ".length());
+            UTF8Container before;
+            UTF8Container after;
+            if (depth == 0) {
+                before = token(1);
+                after = tokenCount > 2 ? token(2) : before;
+            } else {
+                before = nested(beforeClasses[depth - 1], 1);
+                after = nested(afterClasses[depth - 1], tokenCount > 2 ? 2 : 1);
+            }
 
-                var splitIndex = splice.indexOf(' ');
+            if (depth == beforeClasses.length) {
+                beforeClasses = Arrays.copyOf(beforeClasses, depth * 2);
+                afterClasses = Arrays.copyOf(afterClasses, depth * 2);
+            }
+            beforeClasses[depth] = before;
+            afterClasses[depth] = after;
+            classDepth++;
 
-                var origName = splice.substring(0, splitIndex);
-                if (origName.startsWith("<")) return false;
-                var after = splice.substring(splitIndex + 1);
+            if (!before.equals(after)) {
+                batch.addClass(before, after);
+            }
+        }
 
-                var splitIndex2 = after.indexOf(' ');
-                if (splitIndex2 == -1) return false;
+        private UTF8Container nested(UTF8Container outer, int token) {
+            var length = tokenEnds[token] - tokenStarts[token];
+            var out = Arrays.copyOf(outer.getData(), outer.length() + 1 + length);
+            out[outer.length()] = '$';
+            System.arraycopy(data, tokenStarts[token], out, outer.length() + 1, length);
+            return new UTF8Container(out);
+        }
 
-                var newName = after.substring(0, splitIndex2);
-                var desc = after.substring(splitIndex2 + 1);
+        private boolean isKeyword(byte[] keyword) {
+            return Arrays.equals(data, tokenStarts[0], tokenEnds[0], keyword, 0, keyword.length);
+        }
 
-                methodMapping.put(OwnedType.of(currentBeforeClass, origName, desc), new UTF8Container(newName));
-                return false;
-            }  else if (line.startsWith("ARG")) {
-                return false;
-            } else {
-                throw new IllegalStateException("Don't know how to handle mapping line \"" + line + "\"");
+        // Only the first four tokens are ever needed, anything after that is a comment or modifier
+        private void tokenize(int start, int end) {
+            tokenCount = 0;
+            int i = start;
+            while (i < end && tokenCount < tokenStarts.length) {
+                int tokenEnd = indexOf(data, i, end, (byte) ' ');
+                tokenStarts[tokenCount] = i;
+                tokenEnds[tokenCount++] = tokenEnd;
+                i = tokenEnd + 1;
             }
         }
+
+        private UTF8Container token(int token) {
+            return new UTF8Container(Arrays.copyOfRange(data, tokenStarts[token], tokenEnds[token]));
+        }
     }
 }
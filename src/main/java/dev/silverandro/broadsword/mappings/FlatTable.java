@@ -0,0 +1,296 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.mappings.MappingsSet.OwnedType;
+import dev.silverandro.broadsword.tools.UTF8Container;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable open addressing hash table used by {@link FrozenMappingsSet}. Keys are either single names or
+ * owner/name/desc triples, and are stored inline in one byte array instead of as objects.
+ *
+ * @implNote Layout:
+ * <ul>
+ *     <li>{@code slots} holds pairs of {@code (hash, entry + 1)}, with {@code 0} marking an empty slot. Probing is linear
+ *     and compares the stored hash before touching the key bytes.</li>
+ *     <li>{@code keys} holds the raw key bytes of each entry back to back, with entry {@code e} spanning
+ *     {@code keyOffsets[e]} to {@code keyOffsets[e + 1]}. Member keys are three {@code u2} length prefixed parts, a
+ *     missing descriptor is written as length {@link #NO_DESC}.</li>
+ * </ul>
+ */
+final class FlatTable {
+    static final int NO_DESC = 0xFFFF;
+
+    private final int[] slots;
+    private final int shift;
+    private final int[] keyOffsets;
+    private final byte[] keys;
+    private final UTF8Container[] values;
+
+    private FlatTable(int[] slots, int shift, int[] keyOffsets, byte[] keys, UTF8Container[] values) {
+        this.slots = slots;
+        this.shift = shift;
+        this.keyOffsets = keyOffsets;
+        this.keys = keys;
+        this.values = values;
+    }
+
+    int size() {
+        return values.length;
+    }
+
+    void forEachName(BiConsumer<UTF8Container, UTF8Container> action) {
+        for (int i = 0; i < values.length; i++) {
+            action.accept(new UTF8Container(Arrays.copyOfRange(keys, keyOffsets[i], keyOffsets[i + 1])), values[i]);
+        }
+    }
+
+    void forEachMember(BiConsumer<OwnedType, UTF8Container> action) {
+        for (int i = 0; i < values.length; i++) {
+            int pos = keyOffsets[i];
+            var owner = readPart(pos);
+            pos += 2 + owner.length();
+            var name = readPart(pos);
+            pos += 2 + name.length();
+            var desc = readLength(pos) == NO_DESC ? null : readPart(pos);
+            action.accept(new OwnedType(owner, name, desc), values[i]);
+        }
+    }
+
+    /**
+     * Builds a {@link NameFilter} over the keys of this table, by owner and name for member keys.
+     */
+    NameFilter filter(boolean members) {
+        var filter = new NameFilter(values.length);
+        for (int i = 0; i < values.length; i++) {
+            int pos = keyOffsets[i];
+            if (members) {
+                int ownerHash = UTF8Container.hashOf(keys, pos + 2, readLength(pos));
+                pos += 2 + readLength(pos);
+                filter.add(NameFilter.memberHash(ownerHash, UTF8Container.hashOf(keys, pos + 2, readLength(pos))));
+            } else {
+                filter.add(UTF8Container.hashOf(keys, pos, keyOffsets[i + 1] - pos));
+            }
+        }
+        return filter;
+    }
+
+    private UTF8Container readPart(int pos) {
+        return new UTF8Container(Arrays.copyOfRange(keys, pos + 2, pos + 2 + readLength(pos)));
+    }
+
+    //
+    // Name lookups
+    //
+    UTF8Container get(UTF8Container name) {
+        var data = name.getData();
+        return getName(name.hashCode(), data, 0, data.length);
+    }
+
+    UTF8Container get(NameProbe probe) {
+        return getName(probe.hashCode(), probe.data, probe.offset, probe.length);
+    }
+
+    private UTF8Container getName(int hash, byte[] data, int offset, int length) {
+        int slot = slotFor(hash);
+        int entry;
+        while ((entry = slots[slot + 1]) != 0) {
+            if (slots[slot] == hash) {
+                var start = keyOffsets[entry - 1];
+                var end = keyOffsets[entry];
+                if (Arrays.equals(keys, start, end, data, offset, offset + length)) {
+                    return values[entry - 1];
+                }
+            }
+            slot = (slot + 2) & (slots.length - 1);
+        }
+        return null;
+    }
+
+    //
+    // Member lookups
+    //
+    UTF8Container get(OwnedType type) {
+        int hash = type.hashCode();
+        int slot = slotFor(hash);
+        int entry;
+        while ((entry = slots[slot + 1]) != 0) {
+            if (slots[slot] == hash) {
+                int pos = keyOffsets[entry - 1];
+                pos = matchPart(pos, type.owner().getData(), 0, type.owner().length());
+                if (pos >= 0) pos = matchPart(pos, type.name().getData(), 0, type.name().length());
+                if (pos >= 0) {
+                    if (type.desc() == null) {
+                        if (readLength(pos) == NO_DESC) return values[entry - 1];
+                    } else if (matchPart(pos, type.desc().getData(), 0, type.desc().length()) >= 0) {
+                        return values[entry - 1];
+                    }
+                }
+            }
+            slot = (slot + 2) & (slots.length - 1);
+        }
+        return null;
+    }
+
+    UTF8Container get(MemberProbe probe) {
+        int hash = probe.hashCode();
+        int slot = slotFor(hash);
+        int entry;
+        while ((entry = slots[slot + 1]) != 0) {
+            if (slots[slot] == hash) {
+                int pos = keyOffsets[entry - 1];
+                pos = matchPart(pos, probe.owner);
+                if (pos >= 0) pos = matchPart(pos, probe.name);
+                if (pos >= 0) {
+                    if (probe.ignoreDesc) {
+                        if (readLength(pos) == NO_DESC) return values[entry - 1];
+                    } else if (matchPart(pos, probe.desc) >= 0) {
+                        return values[entry - 1];
+                    }
+                }
+            }
+            slot = (slot + 2) & (slots.length - 1);
+        }
+        return null;
+    }
+
+    private int matchPart(int pos, NameProbe probe) {
+        return matchPart(pos, probe.data, probe.offset, probe.length);
+    }
+
+    // Returns the position after the part if it matches, or -1
+    private int matchPart(int pos, byte[] data, int offset, int length) {
+        if (readLength(pos) != length) return -1;
+        pos += 2;
+        if (!Arrays.equals(keys, pos, pos + length, data, offset, offset + length)) return -1;
+        return pos + length;
+    }
+
+    private int readLength(int pos) {
+        return (keys[pos] & 0xff) << 8 | (keys[pos + 1] & 0xff);
+    }
+
+    private int slotFor(int hash) {
+        return index(hash, shift) << 1;
+    }
+
+    /**
+     * Spreads a hash into a table of {@code 1 << (32 - shift)} slots, shared with the compiled format so that both agree.
+     */
+    static int index(int hash, int shift) {
+        return (hash * 0x9E3779B9) >>> shift;
+    }
+
+    /**
+     * The number of bits of slots to use for a table of {@code size} entries, keeping the load factor at or under 0.5 so
+     * that misses, the common case, end quickly.
+     */
+    static int bitsFor(int size) {
+        int bits = 2;
+        while ((1 << bits) < size * 2) bits++;
+        return bits;
+    }
+
+    /**
+     * Collects entries and lays them out into a {@link FlatTable}.
+     */
+    static final class Builder {
+        private int[] hashes;
+        private int[] keyOffsets;
+        private byte[] keys;
+        private UTF8Container[] values;
+        private int size;
+        private int keysLength;
+
+        Builder(int expectedSize) {
+            expectedSize = Math.max(expectedSize, 4);
+            hashes = new int[expectedSize];
+            keyOffsets = new int[expectedSize + 1];
+            keys = new byte[expectedSize * 16];
+            values = new UTF8Container[expectedSize];
+        }
+
+        void putName(UTF8Container name, UTF8Container value) {
+            ensureEntry();
+            writeBytes(name.getData(), 0, name.length());
+            finishEntry(name.hashCode(), value);
+        }
+
+        void putMember(OwnedType type, UTF8Container value) {
+            ensureEntry();
+            writePart(type.owner());
+            writePart(type.name());
+            if (type.desc() == null) {
+                writeLength(NO_DESC);
+            } else {
+                writePart(type.desc());
+            }
+            finishEntry(type.hashCode(), value);
+        }
+
+        FlatTable build() {
+            int bits = bitsFor(size);
+            var slots = new int[2 << bits];
+            int shift = 32 - bits;
+            int mask = slots.length - 1;
+            for (int i = 0; i < size; i++) {
+                int slot = index(hashes[i], shift) << 1;
+                while (slots[slot + 1] != 0) {
+                    slot = (slot + 2) & mask;
+                }
+                slots[slot] = hashes[i];
+                slots[slot + 1] = i + 1;
+            }
+            return new FlatTable(
+                    slots,
+                    shift,
+                    Arrays.copyOf(keyOffsets, size + 1),
+                    Arrays.copyOf(keys, keysLength),
+                    Arrays.copyOf(values, size)
+            );
+        }
+
+        private void ensureEntry() {
+            if (size == values.length) {
+                int newSize = size * 2;
+                hashes = Arrays.copyOf(hashes, newSize);
+                keyOffsets = Arrays.copyOf(keyOffsets, newSize + 1);
+                values = Arrays.copyOf(values, newSize);
+            }
+        }
+
+        private void finishEntry(int hash, UTF8Container value) {
+            hashes[size] = hash;
+            values[size] = value;
+            keyOffsets[++size] = keysLength;
+        }
+
+        private void writePart(UTF8Container part) {
+            writeLength(part.length());
+            writeBytes(part.getData(), 0, part.length());
+        }
+
+        private void writeLength(int length) {
+            ensureKeys(2);
+            keys[keysLength++] = (byte) (length >> 8);
+            keys[keysLength++] = (byte) length;
+        }
+
+        private void writeBytes(byte[] data, int offset, int length) {
+            ensureKeys(length);
+            System.arraycopy(data, offset, keys, keysLength, length);
+            keysLength += length;
+        }
+
+        private void ensureKeys(int extra) {
+            if (keysLength + extra > keys.length) {
+                keys = Arrays.copyOf(keys, Math.max(keys.length * 2, keysLength + extra));
+            }
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.tools.UTF8Container;
+
+import java.util.function.BiConsumer;
+
+/**
+ * An immutable snapshot of another {@link MappingsSet}, created through {@link MappingsSet#freeze()}. All tables are
+ * stored as flat open addressing arrays with inline keys, which avoids the pointer chasing and re-hashing of the
+ * {@link java.util.HashMap}s used while loading. Safe to share between any number of remapping threads.
+ * <p>
+ * Class, field, and method lookups first check a {@link NameFilter} built alongside each table, so that looking up a
+ * name that was never mapped usually costs a few bit tests instead of a probe into the table.
+ */
+public final class FrozenMappingsSet extends MappingsSet {
+    private final boolean fieldTypes;
+    private final FlatTable classes;
+    private final FlatTable fields;
+    private final FlatTable methods;
+    private final FlatTable modules;
+    private final FlatTable packages;
+    private final PackageTrie packageTrie;
+
+    private final NameFilter classFilter;
+    private final NameFilter fieldFilter;
+    private final NameFilter methodFilter;
+
+    FrozenMappingsSet(MappingsSet source) {
+        fieldTypes = source.supportsFieldTypes();
+
+        var classBuilder = new FlatTable.Builder(source.classMapping.size());
+        source.forEachClass(classBuilder::putName);
+        classes = classBuilder.build();
+
+        var fieldBuilder = new FlatTable.Builder(source.fieldMapping.size());
+        source.forEachField(fieldBuilder::putMember);
+        fields = fieldBuilder.build();
+
+        var methodBuilder = new FlatTable.Builder(source.methodMapping.size());
+        source.forEachMethod(methodBuilder::putMember);
+        methods = methodBuilder.build();
+
+        var moduleBuilder = new FlatTable.Builder(source.moduleMapping.size());
+        source.forEachModule(moduleBuilder::putName);
+        modules = moduleBuilder.build();
+
+        var packageBuilder = new FlatTable.Builder(source.packageMapping.size());
+        source.forEachPackage(packageBuilder::putName);
+        packages = packageBuilder.build();
+        packageTrie = PackageTrie.of(this);
+        propagatedClasses.addAll(source.propagatedClasses);
+
+        classFilter = classes.filter(false);
+        fieldFilter = fields.filter(true);
+        methodFilter = methods.filter(true);
+    }
+
+    @Override
+    void checkModifiable() {
+        throw new UnsupportedOperationException("Frozen mappings can't be modified");
+    }
+
+    @Override
+    PackageTrie packageTrie() {
+        return packageTrie;
+    }
+
+    @Override
+    protected boolean supportsFieldTypes() {
+        return fieldTypes;
+    }
+
+    @Override
+    protected UTF8Container findClass(UTF8Container current) {
+        if (!classFilter.mightContain(current.hashCode())) return null;
+        return classes.get(current);
+    }
+
+    @Override
+    protected UTF8Container findClass(NameProbe current) {
+        if (!classFilter.mightContain(current.hashCode())) return null;
+        return classes.get(current);
+    }
+
+    @Override
+    public UTF8Container remapFieldOrNull(UTF8Container parentClass, UTF8Container name, UTF8Container desc) {
+        if (!fieldFilter.mightContain(NameFilter.memberHash(parentClass.hashCode(), name.hashCode()))) return null;
+        return fields.get(new OwnedType(parentClass, name, fieldTypes ? desc : null));
+    }
+
+    @Override
+    public UTF8Container remapFieldOrNull(MemberProbe field) {
+        if (!fieldFilter.mightContain(field)) return null;
+        field.ignoreDesc = !fieldTypes;
+        try {
+            return fields.get(field);
+        } finally {
+            field.ignoreDesc = false;
+        }
+    }
+
+    @Override
+    public UTF8Container remapMethodOrNull(UTF8Container parentClass, UTF8Container name, UTF8Container desc) {
+        if (!methodFilter.mightContain(NameFilter.memberHash(parentClass.hashCode(), name.hashCode()))) return null;
+        return methods.get(new OwnedType(parentClass, name, desc));
+    }
+
+    @Override
+    public UTF8Container remapMethodOrNull(MemberProbe method) {
+        if (!methodFilter.mightContain(method)) return null;
+        return methods.get(method);
+    }
+
+    @Override
+    public UTF8Container remapModuleOrNull(UTF8Container current) {
+        return modules.get(current);
+    }
+
+    @Override
+    public UTF8Container remapPackageOrNull(UTF8Container current) {
+        return packages.get(current);
+    }
+
+    @Override
+    public void forEachClass(BiConsumer<UTF8Container, UTF8Container> action) {
+        classes.forEachName(action);
+    }
+
+    @Override
+    public void forEachField(BiConsumer<OwnedType, UTF8Container> action) {
+        fields.forEachMember(action);
+    }
+
+    @Override
+    public void forEachMethod(BiConsumer<OwnedType, UTF8Container> action) {
+        methods.forEachMember(action);
+    }
+
+    @Override
+    public void forEachModule(BiConsumer<UTF8Container, UTF8Container> action) {
+        modules.forEachName(action);
+    }
+
+    @Override
+    public void forEachPackage(BiConsumer<UTF8Container, UTF8Container> action) {
+        packages.forEachName(action);
+    }
+
+    /**
+     * Already frozen, returns itself.
+     */
+    @Override
+    public FrozenMappingsSet freeze() {
+        return this;
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.lookups.ClassMappingLookup;
+import dev.silverandro.broadsword.tools.UTF8Container;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pushes method mappings down the class hierarchy ahead of time, see
+ * {@link MappingsSet#propagateMethods(Collection, ClassMappingLookup)}.
+ * <p>
+ * Every class is resolved once into the set of mapped methods visible from it, keyed by name and descriptor with a
+ * {@code null} owner. Children build on the result of their parents, so a deep hierarchy is walked once in total
+ * instead of once per subclass and method.
+ * <p>
+ * The mapped methods of each class come from a single pass over the set, made before anything is propagated. A
+ * {@link dev.silverandro.broadsword.data.ClassMappingStruct} only keeps one descriptor per method name, so reading them
+ * from it would miss mapped overloads.
+ */
+final class InheritancePropagator {
+    private static final Map<MappingsSet.OwnedType, UTF8Container> NONE = Map.of();
+
+    private final MappingsSet mappings;
+    private final ClassMappingLookup lookup;
+    // The mapped methods each class declares, by owner
+    private final Map<UTF8Container, Map<MappingsSet.OwnedType, UTF8Container>> declared = new HashMap<>();
+    private final Map<UTF8Container, Map<MappingsSet.OwnedType, UTF8Container>> resolved = new HashMap<>();
+
+    InheritancePropagator(MappingsSet mappings, ClassMappingLookup lookup) {
+        this.mappings = mappings;
+        this.lookup = lookup;
+        mappings.forEachMethod((method, newName) -> declared
+                .computeIfAbsent(method.owner(), owner -> new HashMap<>())
+                .put(new MappingsSet.OwnedType(null, method.name(), method.desc()), newName));
+    }
+
+    /**
+     * Adds a mapping to the class for every method it declares with the name of a mapped method in one of its parents,
+     * unless it already has a mapping of its own.
+     */
+    void propagate(UTF8Container className) {
+        var struct = lookup.lookupClassInfo(className);
+        if (struct == null) return;
+        var declared = struct.methodsAndDesc();
+        if (declared.isEmpty()) return;
+
+        // Match on name only, the struct keeps a single descriptor per name so overloads would otherwise be missed
+        for (var parent : struct.superAndInterfaceClasses()) {
+            resolve(parent).forEach((method, newName) -> {
+                if (declared.containsKey(method.name()) &&
+                        mappings.remapMethodOrNull(className, method.name(), method.desc()) == null) {
+                    mappings.putMethod(className, method.name(), method.desc(), newName);
+                }
+            });
+        }
+    }
+
+    // The mapped methods visible from a class, its own mappings first and then its parents in declaration order
+    private Map<MappingsSet.OwnedType, UTF8Container> resolve(UTF8Container className) {
+        if (className.startsWithJava()) return NONE;
+        var known = resolved.get(className);
+        if (known != null) return known;
+        // Guards against a malformed hierarchy with a cycle in it
+        resolved.put(className, NONE);
+
+        // The declared map is only ever read here, so it can be modified in place
+        var result = declared.get(className);
+        // Whether result is ours to modify, or still shared with a parent
+        boolean owned = result != null;
+        var struct = lookup.lookupClassInfo(className);
+        var parents = struct == null ? List.<UTF8Container>of() : struct.superAndInterfaceClasses();
+
+        for (var parent : parents) {
+            var inherited = resolve(parent);
+            if (inherited.isEmpty() || inherited == result) continue;
+            if (result == null) {
+                // Nothing of our own (yet), share the parent's map rather than copying it
+                result = inherited;
+                continue;
+            }
+            if (!owned) {
+                result = new HashMap<>(result);
+                owned = true;
+            }
+            for (var method : inherited.entrySet()) {
+                result.putIfAbsent(method.getKey(), method.getValue());
+            }
+        }
+
+        if (result == null) result = NONE;
+        resolved.put(className, result);
+        return result;
+    }
+}
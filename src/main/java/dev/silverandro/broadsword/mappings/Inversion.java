@@ -0,0 +1,74 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.tools.UTF8Container;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * Builds the reverse of a set, see {@link MappingsSet#invert()}.
+ * <p>
+ * Translating member owners and descriptors into the target namespace is the expensive part, and only reads the
+ * source set, so it runs in parallel over every table. The results are then inserted from a single thread because
+ * interning symbols is not thread safe.
+ */
+final class Inversion {
+    private Inversion() {}
+
+    static CustomMappingsSet invert(MappingsSet source) {
+        var result = new CustomMappingsSet(source.supportsFieldTypes());
+
+        var classes = collect(source::forEachClass);
+        var fields = collect(source::forEachField);
+        var methods = collect(source::forEachMethod);
+
+        var invertedClasses = classes.parallelStream()
+                .map(entry -> new Entry<>(entry.value, entry.key))
+                .toList();
+        var invertedFields = fields.parallelStream()
+                .map(entry -> invertMember(source, entry))
+                .toList();
+        var invertedMethods = methods.parallelStream()
+                .map(entry -> invertMember(source, entry))
+                .toList();
+
+        for (var entry : invertedClasses) {
+            result.putClass(entry.key, entry.value);
+        }
+        for (var entry : invertedFields) {
+            result.putField(entry.key.owner(), entry.key.name(), entry.key.desc(), entry.value);
+        }
+        for (var entry : invertedMethods) {
+            result.putMethod(entry.key.owner(), entry.key.name(), entry.key.desc(), entry.value);
+        }
+        // A handful of entries at most, not worth going parallel for
+        source.forEachModule((original, mapped) -> result.putModule(mapped, original));
+        source.forEachPackage((original, mapped) -> result.putPackage(mapped, original));
+        return result;
+    }
+
+    // Keys the member by its owner, name, and descriptor in the target namespace, the value is the original name
+    private static Entry<MappingsSet.OwnedType, UTF8Container> invertMember(
+            MappingsSet source,
+            Entry<MappingsSet.OwnedType, UTF8Container> entry
+    ) {
+        var key = entry.key;
+        var desc = key.desc() == null ? null : source.translateDescriptor(key.desc());
+        var owner = source.remapClass(key.owner());
+        return new Entry<>(new MappingsSet.OwnedType(owner, entry.value, desc), key.name());
+    }
+
+    private static <K> List<Entry<K, UTF8Container>> collect(Consumer<BiConsumer<K, UTF8Container>> table) {
+        var entries = new ArrayList<Entry<K, UTF8Container>>();
+        table.accept((key, value) -> entries.add(new Entry<>(key, value)));
+        return entries;
+    }
+
+    private record Entry<K, V>(K key, V value) {}
+}
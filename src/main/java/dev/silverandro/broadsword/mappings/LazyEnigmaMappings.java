@@ -0,0 +1,244 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.tools.UTF8Container;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+/**
+ * An Enigma mappings directory that is only parsed as far as lookups need it, created through
+ * {@link EnigmaMappings#lazyFromDirectory(Path)}. Enigma stores one top level class per file, so the directory is indexed
+ * by the first {@code CLASS} line of every file, and a file is parsed the first time a class, field, or method of that
+ * class or one of its nested classes is looked up. Remapping a small jar then only parses the files it references.
+ * <p>
+ * Lookups are safe from any number of threads, each file is parsed exactly once. Iterating the set parses every file
+ * that hasn't been parsed yet. This set can't be modified.
+ */
+public final class LazyEnigmaMappings extends MappingsSet {
+    private static final byte[] CLASS = "CLASS ".getBytes(StandardCharsets.UTF_8);
+    // Enough for the first line of any reasonable file, longer ones are read whole
+    private static final int HEADER_BYTES = 512;
+    // Only used inside load, which never runs again on the same thread before it returns
+    private static final ThreadLocal<NameProbe> PROBE = ThreadLocal.withInitial(NameProbe::new);
+
+    // Top level class names to their files, never changed after construction
+    private final Map<UTF8Container, MappingFile> files;
+    private final ConcurrentMappingsSet loaded = new ConcurrentMappingsSet();
+
+    LazyEnigmaMappings(Path directory) throws IOException {
+        List<Path> paths;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            paths = walk.filter(file -> file.getFileName().toString().endsWith(".mapping"))
+                    .sorted()
+                    .toList();
+        }
+
+        var names = paths.parallelStream()
+                .map(file -> {
+                    try {
+                        return topLevelClass(file);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                })
+                .toList();
+
+        files = new HashMap<>(paths.size() * 2);
+        for (int i = 0; i < paths.size(); i++) {
+            files.computeIfAbsent(names.get(i), name -> new MappingFile()).paths.add(paths.get(i));
+        }
+    }
+
+    private static UTF8Container topLevelClass(Path file) throws IOException {
+        byte[] data;
+        try (var input = Files.newInputStream(file)) {
+            data = input.readNBytes(HEADER_BYTES);
+        }
+        int lineEnd = indexOf(data, 0, data.length, (byte) '\n');
+        if (lineEnd == data.length && data.length == HEADER_BYTES) {
+            data = Files.readAllBytes(file);
+            lineEnd = indexOf(data, 0, data.length, (byte) '\n');
+        }
+        if (lineEnd > 0 && data[lineEnd - 1] == '\r') lineEnd--;
+
+        // CLASS original [mapped]
+        if (lineEnd <= CLASS.length || !Arrays.equals(data, 0, CLASS.length, CLASS, 0, CLASS.length)) {
+            throw new IllegalStateException("Mapping file " + file + " does not start with a top level class");
+        }
+        return new UTF8Container(Arrays.copyOfRange(data, CLASS.length, indexOf(data, CLASS.length, lineEnd, (byte) ' ')));
+    }
+
+    /**
+     * @return How many of the indexed files have been parsed so far
+     */
+    public int loadedFiles() {
+        int count = 0;
+        for (var file : files.values()) {
+            if (file.loaded) count++;
+        }
+        return count;
+    }
+
+    /**
+     * @return How many files the directory has
+     */
+    public int indexedFiles() {
+        int count = 0;
+        for (var file : files.values()) {
+            count += file.paths.size();
+        }
+        return count;
+    }
+
+    // Nested classes live in the file of their top level class, so the name is cut back at each $ until a file is found
+    private void load(byte[] data, int offset, int length) {
+        var probe = PROBE.get();
+        int end = offset + length;
+        try {
+            while (true) {
+                var file = files.get(probe.set(data, offset, end - offset));
+                if (file != null) {
+                    file.load(loaded);
+                    return;
+                }
+                end = lastIndexOf(data, offset, end, (byte) '$');
+                if (end < 0) return;
+            }
+        } finally {
+            // Don't keep the looked up class file alive from the thread
+            probe.data = null;
+        }
+    }
+
+    private void load(UTF8Container className) {
+        load(className.getData(), 0, className.length());
+    }
+
+    private void load(NameProbe className) {
+        load(className.data, className.offset, className.length);
+    }
+
+    private void loadAll() {
+        files.values().parallelStream().forEach(file -> file.load(loaded));
+    }
+
+    @Override
+    void checkModifiable() {
+        throw new UnsupportedOperationException("Lazy mappings can't be modified");
+    }
+
+    // Parsing another file never changes the result of a lookup that has already been made, so memoized descriptors
+    // stay valid
+    @Override
+    protected int classVersion() {
+        return 0;
+    }
+
+    // Answering would mean parsing every file
+    @Override
+    public boolean mapsMemberNamed(NameProbe name) {
+        return true;
+    }
+
+    @Override
+    protected UTF8Container findClass(UTF8Container current) {
+        load(current);
+        return loaded.findClass(current);
+    }
+
+    @Override
+    protected UTF8Container findClass(NameProbe current) {
+        load(current);
+        return loaded.findClass(current);
+    }
+
+    @Override
+    public UTF8Container remapFieldOrNull(UTF8Container parentClass, UTF8Container name, UTF8Container desc) {
+        load(parentClass);
+        return loaded.remapFieldOrNull(parentClass, name, desc);
+    }
+
+    @Override
+    public UTF8Container remapFieldOrNull(MemberProbe field) {
+        load(field.owner);
+        return loaded.remapFieldOrNull(field);
+    }
+
+    @Override
+    public UTF8Container remapMethodOrNull(UTF8Container parentClass, UTF8Container name, UTF8Container desc) {
+        load(parentClass);
+        return loaded.remapMethodOrNull(parentClass, name, desc);
+    }
+
+    @Override
+    public UTF8Container remapMethodOrNull(MemberProbe method) {
+        load(method.owner);
+        return loaded.remapMethodOrNull(method);
+    }
+
+    @Override
+    public void forEachClass(BiConsumer<UTF8Container, UTF8Container> action) {
+        loadAll();
+        loaded.forEachClass(action);
+    }
+
+    @Override
+    public void forEachField(BiConsumer<OwnedType, UTF8Container> action) {
+        loadAll();
+        loaded.forEachField(action);
+    }
+
+    @Override
+    public void forEachMethod(BiConsumer<OwnedType, UTF8Container> action) {
+        loadAll();
+        loaded.forEachMethod(action);
+    }
+
+    private static int indexOf(byte[] data, int from, int end, byte c) {
+        for (int i = from; i < end; i++) {
+            if (data[i] == c) return i;
+        }
+        return end;
+    }
+
+    private static int lastIndexOf(byte[] data, int from, int end, byte c) {
+        for (int i = end - 1; i >= from; i--) {
+            if (data[i] == c) return i;
+        }
+        return -1;
+    }
+
+    private static final class MappingFile {
+        // Usually one, more if several files declare the same top level class
+        final List<Path> paths = new ArrayList<>(1);
+        volatile boolean loaded;
+
+        void load(ConcurrentMappingsSet into) {
+            if (loaded) return;
+            synchronized (this) {
+                if (loaded) return;
+                for (var path : paths) {
+                    try {
+                        EnigmaMappings.parse(Files.readAllBytes(path)).applyTo(into);
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+                loaded = true;
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * Reads an input stream one line at a time without decoding it, for the mapping file parsers. The current line is
+ * {@code buffer[start, end)} with the line terminator ({@code \n} or {@code \r\n}) removed, and is only valid until the
+ * next call to {@link #next()}.
+ */
+final class LineReader {
+    private final InputStream input;
+    byte[] buffer = new byte[1 << 16];
+    int start;
+    int end;
+
+    // Unconsumed data is buffer[position, limit), of which [position, scanned) is known to hold no newline
+    private int position;
+    private int scanned;
+    private int limit;
+    private boolean eof;
+
+    LineReader(InputStream input) {
+        this.input = input;
+    }
+
+    /**
+     * Advances to the next line.
+     * @return {@code false} once the input is exhausted
+     */
+    boolean next() throws IOException {
+        while (true) {
+            for (int i = scanned; i < limit; i++) {
+                if (buffer[i] == '\n') {
+                    setLine(position, i);
+                    position = scanned = i + 1;
+                    return true;
+                }
+            }
+            scanned = limit;
+
+            if (eof) {
+                if (position == limit) return false;
+                // Last line without a trailing newline
+                setLine(position, limit);
+                position = scanned = limit;
+                return true;
+            }
+            fill();
+        }
+    }
+
+    private void setLine(int from, int to) {
+        start = from;
+        end = to > from && buffer[to - 1] == '\r' ? to - 1 : to;
+    }
+
+    private void fill() throws IOException {
+        if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, limit - position);
+            limit -= position;
+            scanned -= position;
+            position = 0;
+        }
+        // A single line longer than the buffer
+        if (limit == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        }
+        var read = input.read(buffer, limit, buffer.length - limit);
+        if (read < 0) {
+            eof = true;
+        } else {
+            limit += read;
+        }
+    }
+}
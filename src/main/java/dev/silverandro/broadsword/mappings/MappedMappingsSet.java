@@ -0,0 +1,401 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.tools.UTF8Container;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * A read only {@link MappingsSet} answering lookups straight from a memory mapped compiled mappings file, as written by
+ * {@link #write(MappingsSet, Path)}. Opening a file only maps it, so load time does not depend on the size of the
+ * mappings and the tables stay off the java heap. Only the results of successful lookups are copied onto the heap.
+ * <p>
+ * Safe to share between threads, all reads are absolute and never touch the buffer position. Which classes had their
+ * methods propagated is not stored, so remapping them falls back to walking the hierarchy.
+ *
+ * @implNote Layout, all values big endian like the class file format:
+ * <pre>
+ *  u4 magic 'BSMP'
+ *  u2 version
+ *  u2 flags            bit 0 set if fields are keyed with descriptors
+ *  u4 table_offsets[5] classes, fields, methods, modules, packages
+ *  table {
+ *      u4 slot_count   power of two
+ *      u4 entry_count
+ *      (u4 hash, u4 entry_offset)[slot_count]    entry_offset is absolute, 0 for an empty slot
+ *      entry[entry_count]
+ *  }
+ *  name entry   { u2 length, key, u2 length, value }
+ *  member entry { u2 length, owner, u2 length, name, u2 length (0xFFFF if absent), desc, u2 length, value }
+ * </pre>
+ * Hashes and slot indices are the same as {@link FrozenMappingsSet} uses.
+ */
+public final class MappedMappingsSet extends MappingsSet {
+    private static final int MAGIC = 0x42534D50;
+    private static final int VERSION = 1;
+    private static final int FLAG_FIELD_TYPES = 1;
+    private static final int HEADER_SIZE = 8 + 5 * 4;
+
+    private final ByteBuffer buffer;
+    private final boolean fieldTypes;
+    private final Table classes;
+    private final Table fields;
+    private final Table methods;
+    private final Table modules;
+    private final Table packages;
+    private final PackageTrie packageTrie;
+
+    private MappedMappingsSet(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.getInt(0) != MAGIC) {
+            throw new IllegalStateException("Not a compiled mappings file");
+        }
+        var version = buffer.getShort(4);
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported compiled mappings version " + version);
+        }
+        fieldTypes = (buffer.getShort(6) & FLAG_FIELD_TYPES) != 0;
+        classes = new Table(buffer.getInt(8));
+        fields = new Table(buffer.getInt(12));
+        methods = new Table(buffer.getInt(16));
+        modules = new Table(buffer.getInt(20));
+        packages = new Table(buffer.getInt(24));
+        // Package mappings are a handful of rules at most, keeping them on the heap costs nothing
+        packageTrie = PackageTrie.of(this);
+    }
+
+    /**
+     * Maps a compiled mappings file into memory. The file must not be modified while the returned set is in use.
+     */
+    public static MappedMappingsSet open(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return new MappedMappingsSet(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Compiles the contents of a mappings set into a file that can later be opened with {@link #open(Path)}.
+     */
+    public static void write(MappingsSet set, Path path) throws IOException {
+        var classes = new TableWriter();
+        set.forEachClass(classes::putName);
+        var fields = new TableWriter();
+        set.forEachField(fields::putMember);
+        var methods = new TableWriter();
+        set.forEachMethod(methods::putMember);
+        var modules = new TableWriter();
+        set.forEachModule(modules::putName);
+        var packages = new TableWriter();
+        set.forEachPackage(packages::putName);
+        var tables = new TableWriter[] { classes, fields, methods, modules, packages };
+
+        try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(path)))) {
+            output.writeInt(MAGIC);
+            output.writeShort(VERSION);
+            output.writeShort(set.supportsFieldTypes() ? FLAG_FIELD_TYPES : 0);
+
+            int offset = HEADER_SIZE;
+            for (var table : tables) {
+                output.writeInt(offset);
+                offset += table.size();
+            }
+
+            offset = HEADER_SIZE;
+            for (var table : tables) {
+                table.writeTo(output, offset);
+                offset += table.size();
+            }
+        }
+    }
+
+    @Override
+    void checkModifiable() {
+        throw new UnsupportedOperationException("Compiled mappings can't be modified");
+    }
+
+    @Override
+    PackageTrie packageTrie() {
+        return packageTrie;
+    }
+
+    @Override
+    protected boolean supportsFieldTypes() {
+        return fieldTypes;
+    }
+
+    @Override
+    protected UTF8Container findClass(UTF8Container current) {
+        return classes.getName(current.hashCode(), current.getData(), 0, current.length());
+    }
+
+    @Override
+    protected UTF8Container findClass(NameProbe current) {
+        return classes.getName(current.hashCode(), current.data, current.offset, current.length);
+    }
+
+    @Override
+    public UTF8Container remapFieldOrNull(UTF8Container parentClass, UTF8Container name, UTF8Container desc) {
+        return fields.getMember(new OwnedType(parentClass, name, fieldTypes ? desc : null));
+    }
+
+    @Override
+    public UTF8Container remapFieldOrNull(MemberProbe field) {
+        field.ignoreDesc = !fieldTypes;
+        try {
+            return fields.getMember(field);
+        } finally {
+            field.ignoreDesc = false;
+        }
+    }
+
+    @Override
+    public UTF8Container remapMethodOrNull(UTF8Container parentClass, UTF8Container name, UTF8Container desc) {
+        return methods.getMember(new OwnedType(parentClass, name, desc));
+    }
+
+    @Override
+    public UTF8Container remapMethodOrNull(MemberProbe method) {
+        return methods.getMember(method);
+    }
+
+    @Override
+    public UTF8Container remapModuleOrNull(UTF8Container current) {
+        return modules.getName(current.hashCode(), current.getData(), 0, current.length());
+    }
+
+    @Override
+    public UTF8Container remapPackageOrNull(UTF8Container current) {
+        return packages.getName(current.hashCode(), current.getData(), 0, current.length());
+    }
+
+    @Override
+    public void forEachClass(BiConsumer<UTF8Container, UTF8Container> action) {
+        classes.forEachName(action);
+    }
+
+    @Override
+    public void forEachField(BiConsumer<OwnedType, UTF8Container> action) {
+        fields.forEachMember(action);
+    }
+
+    @Override
+    public void forEachMethod(BiConsumer<OwnedType, UTF8Container> action) {
+        methods.forEachMember(action);
+    }
+
+    @Override
+    public void forEachModule(BiConsumer<UTF8Container, UTF8Container> action) {
+        modules.forEachName(action);
+    }
+
+    @Override
+    public void forEachPackage(BiConsumer<UTF8Container, UTF8Container> action) {
+        packages.forEachName(action);
+    }
+
+    private int readLength(int pos) {
+        return buffer.getShort(pos) & 0xffff;
+    }
+
+    private UTF8Container readPart(int pos) {
+        var out = new byte[readLength(pos)];
+        buffer.get(pos + 2, out);
+        return new UTF8Container(out);
+    }
+
+    // Returns the position after the part if it matches, or -1
+    private int matchPart(int pos, byte[] data, int offset, int length) {
+        if (readLength(pos) != length) return -1;
+        pos += 2;
+        for (int i = 0; i < length; i++) {
+            if (buffer.get(pos + i) != data[offset + i]) return -1;
+        }
+        return pos + length;
+    }
+
+    private int skipPart(int pos) {
+        var length = readLength(pos);
+        return length == FlatTable.NO_DESC ? pos + 2 : pos + 2 + length;
+    }
+
+    private final class Table {
+        private final int slotsStart;
+        private final int slotCount;
+        private final int entryCount;
+        private final int shift;
+
+        private Table(int offset) {
+            slotCount = buffer.getInt(offset);
+            entryCount = buffer.getInt(offset + 4);
+            slotsStart = offset + 8;
+            shift = 32 - Integer.numberOfTrailingZeros(slotCount);
+        }
+
+        UTF8Container getName(int hash, byte[] data, int offset, int length) {
+            int slot = FlatTable.index(hash, shift);
+            int entry;
+            while ((entry = buffer.getInt(slotsStart + slot * 8 + 4)) != 0) {
+                if (buffer.getInt(slotsStart + slot * 8) == hash) {
+                    var pos = matchPart(entry, data, offset, length);
+                    if (pos >= 0) return readPart(pos);
+                }
+                slot = (slot + 1) & (slotCount - 1);
+            }
+            return null;
+        }
+
+        UTF8Container getMember(OwnedType type) {
+            int hash = type.hashCode();
+            int slot = FlatTable.index(hash, shift);
+            int entry;
+            while ((entry = buffer.getInt(slotsStart + slot * 8 + 4)) != 0) {
+                if (buffer.getInt(slotsStart + slot * 8) == hash) {
+                    var pos = matchPart(entry, type.owner().getData(), 0, type.owner().length());
+                    if (pos >= 0) pos = matchPart(pos, type.name().getData(), 0, type.name().length());
+                    if (pos >= 0) {
+                        if (type.desc() == null) {
+                            if (readLength(pos) == FlatTable.NO_DESC) return readPart(pos + 2);
+                        } else {
+                            pos = matchPart(pos, type.desc().getData(), 0, type.desc().length());
+                            if (pos >= 0) return readPart(pos);
+                        }
+                    }
+                }
+                slot = (slot + 1) & (slotCount - 1);
+            }
+            return null;
+        }
+
+        UTF8Container getMember(MemberProbe probe) {
+            int hash = probe.hashCode();
+            int slot = FlatTable.index(hash, shift);
+            int entry;
+            while ((entry = buffer.getInt(slotsStart + slot * 8 + 4)) != 0) {
+                if (buffer.getInt(slotsStart + slot * 8) == hash) {
+                    var pos = matchPart(entry, probe.owner.data, probe.owner.offset, probe.owner.length);
+                    if (pos >= 0) pos = matchPart(pos, probe.name.data, probe.name.offset, probe.name.length);
+                    if (pos >= 0) {
+                        if (probe.ignoreDesc) {
+                            if (readLength(pos) == FlatTable.NO_DESC) return readPart(pos + 2);
+                        } else {
+                            pos = matchPart(pos, probe.desc.data, probe.desc.offset, probe.desc.length);
+                            if (pos >= 0) return readPart(pos);
+                        }
+                    }
+                }
+                slot = (slot + 1) & (slotCount - 1);
+            }
+            return null;
+        }
+
+        void forEachName(BiConsumer<UTF8Container, UTF8Container> action) {
+            int pos = slotsStart + slotCount * 8;
+            for (int i = 0; i < entryCount; i++) {
+                var key = readPart(pos);
+                pos += 2 + key.length();
+                var value = readPart(pos);
+                pos += 2 + value.length();
+                action.accept(key, value);
+            }
+        }
+
+        void forEachMember(BiConsumer<OwnedType, UTF8Container> action) {
+            int pos = slotsStart + slotCount * 8;
+            for (int i = 0; i < entryCount; i++) {
+                var owner = readPart(pos);
+                pos += 2 + owner.length();
+                var name = readPart(pos);
+                pos += 2 + name.length();
+                UTF8Container desc = null;
+                if (readLength(pos) != FlatTable.NO_DESC) {
+                    desc = readPart(pos);
+                }
+                pos = skipPart(pos);
+                var value = readPart(pos);
+                pos += 2 + value.length();
+                action.accept(new OwnedType(owner, name, desc), value);
+            }
+        }
+    }
+
+    /**
+     * Serializes the entries of one table, the slots can only be written once the table's position is known.
+     */
+    private static final class TableWriter {
+        private final ByteArrayOutputStream entries = new ByteArrayOutputStream();
+        private final List<int[]> hashAndOffset = new ArrayList<>();
+
+        void putName(UTF8Container key, UTF8Container value) {
+            hashAndOffset.add(new int[] { key.hashCode(), entries.size() });
+            writePart(key);
+            writePart(value);
+        }
+
+        void putMember(OwnedType key, UTF8Container value) {
+            hashAndOffset.add(new int[] { key.hashCode(), entries.size() });
+            writePart(key.owner());
+            writePart(key.name());
+            if (key.desc() == null) {
+                writeLength(FlatTable.NO_DESC);
+            } else {
+                writePart(key.desc());
+            }
+            writePart(value);
+        }
+
+        int slotCount() {
+            return 1 << FlatTable.bitsFor(hashAndOffset.size());
+        }
+
+        int size() {
+            return 8 + slotCount() * 8 + entries.size();
+        }
+
+        void writeTo(DataOutputStream output, int offset) throws IOException {
+            var slotCount = slotCount();
+            var shift = 32 - Integer.numberOfTrailingZeros(slotCount);
+            var entriesStart = offset + 8 + slotCount * 8;
+
+            var slots = new int[slotCount * 2];
+            for (var entry : hashAndOffset) {
+                int slot = FlatTable.index(entry[0], shift);
+                while (slots[slot * 2 + 1] != 0) {
+                    slot = (slot + 1) & (slotCount - 1);
+                }
+                slots[slot * 2] = entry[0];
+                slots[slot * 2 + 1] = entriesStart + entry[1];
+            }
+
+            output.writeInt(slotCount);
+            output.writeInt(hashAndOffset.size());
+            for (var value : slots) {
+                output.writeInt(value);
+            }
+            entries.writeTo(output);
+        }
+
+        private void writePart(UTF8Container part) {
+            writeLength(part.length());
+            entries.write(part.getData(), 0, part.length());
+        }
+
+        private void writeLength(int length) {
+            entries.write(length >> 8);
+            entries.write(length);
+        }
+    }
+}
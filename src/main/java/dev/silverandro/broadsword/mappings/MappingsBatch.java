@@ -0,0 +1,162 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.tools.UTF8Container;
+
+import java.util.Arrays;
+
+/**
+ * Entries parsed from part of a mappings file, held back so that several parser threads can work at once. Each batch
+ * interns its names into its own {@link SymbolTable}, so parser threads never share one, and the batches are applied
+ * to the set one at a time with {@link #applyTo(MappingsSet)}, in file order.
+ * <p>
+ * Applying a batch interns each distinct name of the batch into the set once, then copies the entries over as symbol
+ * IDs, so the work left on the applying thread is proportional to the distinct names rather than to every token.
+ */
+final class MappingsBatch {
+    private static final int NONE = -1;
+
+    private final SymbolTable symbols = new SymbolTable();
+    // (original, mapped) pairs of symbol IDs
+    private int[] classes = new int[256];
+    private int classesLength;
+    // (owner, original, desc, mapped) quads, desc is MemberMap.NO_DESC if there is none
+    private int[] fields = new int[512];
+    private int fieldsLength;
+    private int[] methods = new int[512];
+    private int methodsLength;
+
+    /**
+     * @return The ID of the name made of {@code data[from, to)} in this batch, the bytes are only copied the first time
+     */
+    int symbol(byte[] data, int from, int to) {
+        return symbols.intern(data, from, to - from);
+    }
+
+    void addClass(UTF8Container original, UTF8Container mapped) {
+        addClass(symbols.intern(original), symbols.intern(mapped));
+    }
+
+    void addClass(int original, int mapped) {
+        if (classesLength + 2 > classes.length) classes = Arrays.copyOf(classes, classes.length * 2);
+        classes[classesLength++] = original;
+        classes[classesLength++] = mapped;
+    }
+
+    void addField(UTF8Container owner, UTF8Container original, UTF8Container desc, UTF8Container mapped) {
+        addField(symbols.intern(owner), symbols.intern(original), symbolOrNone(desc), symbols.intern(mapped));
+    }
+
+    void addField(int owner, int original, int desc, int mapped) {
+        if (fieldsLength + 4 > fields.length) fields = Arrays.copyOf(fields, fields.length * 2);
+        fieldsLength = addMember(fields, fieldsLength, owner, original, desc, mapped);
+    }
+
+    void addMethod(UTF8Container owner, UTF8Container original, UTF8Container desc, UTF8Container mapped) {
+        addMethod(symbols.intern(owner), symbols.intern(original), symbolOrNone(desc), symbols.intern(mapped));
+    }
+
+    void addMethod(int owner, int original, int desc, int mapped) {
+        if (methodsLength + 4 > methods.length) methods = Arrays.copyOf(methods, methods.length * 2);
+        methodsLength = addMember(methods, methodsLength, owner, original, desc, mapped);
+    }
+
+    private int symbolOrNone(UTF8Container symbol) {
+        return symbol == null ? MemberMap.NO_DESC : symbols.intern(symbol);
+    }
+
+    private static int addMember(int[] members, int length, int owner, int original, int desc, int mapped) {
+        members[length++] = owner;
+        members[length++] = original;
+        members[length++] = desc;
+        members[length++] = mapped;
+        return length;
+    }
+
+    /**
+     * Puts every entry into the set, must not be called from more than one thread at a time.
+     */
+    void applyTo(MappingsSet set) {
+        applyTo(set, null);
+    }
+
+    /**
+     * Puts every entry into the set, first translating member descriptors with the class mappings of
+     * {@code descriptors} if it is not {@code null}. Must not be called from more than one thread at a time.
+     */
+    void applyTo(MappingsSet set, MappingsSet descriptors) {
+        set.putBatch(this, descriptors);
+    }
+
+    /**
+     * Copies every entry into the tables of a set as symbol IDs of {@code target}, see
+     * {@link MappingsSet#putBatch(MappingsBatch, MappingsSet)}.
+     */
+    void copyInto(SymbolTable target, NameMap classMapping, MemberMap fieldMapping, MemberMap methodMapping, boolean fieldTypes, MappingsSet descriptors) {
+        // Batch IDs to set IDs, only filled in for the names that are used, as a descriptor may only be used translated
+        var ids = new int[symbols.size()];
+        Arrays.fill(ids, NONE);
+        int[] descs = null;
+        if (descriptors != null) {
+            descs = new int[symbols.size()];
+            Arrays.fill(descs, NONE);
+        }
+
+        for (int i = 0; i < classesLength; i += 2) {
+            classMapping.put(id(target, ids, classes[i]), id(target, ids, classes[i + 1]));
+        }
+        for (int i = 0; i < fieldsLength; i += 4) {
+            var desc = fieldTypes ? desc(target, ids, descs, descriptors, fields[i + 2]) : MemberMap.NO_DESC;
+            fieldMapping.put(id(target, ids, fields[i]), id(target, ids, fields[i + 1]), desc, id(target, ids, fields[i + 3]));
+        }
+        for (int i = 0; i < methodsLength; i += 4) {
+            var desc = desc(target, ids, descs, descriptors, methods[i + 2]);
+            methodMapping.put(id(target, ids, methods[i]), id(target, ids, methods[i + 1]), desc, id(target, ids, methods[i + 3]));
+        }
+    }
+
+    private int id(SymbolTable target, int[] ids, int symbol) {
+        var id = ids[symbol];
+        if (id == NONE) {
+            // The batch's own container is kept, nothing is copied
+            id = target.intern(symbols.get(symbol));
+            ids[symbol] = id;
+        }
+        return id;
+    }
+
+    private int desc(SymbolTable target, int[] ids, int[] descs, MappingsSet descriptors, int symbol) {
+        if (symbol == MemberMap.NO_DESC) return MemberMap.NO_DESC;
+        if (descriptors == null) return id(target, ids, symbol);
+        var id = descs[symbol];
+        if (id == NONE) {
+            id = target.intern(descriptors.translateDescriptor(symbols.get(symbol)));
+            descs[symbol] = id;
+        }
+        return id;
+    }
+
+    /**
+     * Puts every entry into the set one by one through its put methods, for sets that keep their mappings elsewhere.
+     */
+    void putEach(MappingsSet set, MappingsSet descriptors) {
+        for (int i = 0; i < classesLength; i += 2) {
+            set.putClass(symbols.get(classes[i]), symbols.get(classes[i + 1]));
+        }
+        for (int i = 0; i < fieldsLength; i += 4) {
+            set.putField(symbols.get(fields[i]), symbols.get(fields[i + 1]), translate(descriptors, fields[i + 2]), symbols.get(fields[i + 3]));
+        }
+        for (int i = 0; i < methodsLength; i += 4) {
+            set.putMethod(symbols.get(methods[i]), symbols.get(methods[i + 1]), translate(descriptors, methods[i + 2]), symbols.get(methods[i + 3]));
+        }
+    }
+
+    private UTF8Container translate(MappingsSet descriptors, int desc) {
+        if (desc == MemberMap.NO_DESC) return null;
+        var symbol = symbols.get(desc);
+        return descriptors == null ? symbol : descriptors.translateDescriptor(symbol);
+    }
+}
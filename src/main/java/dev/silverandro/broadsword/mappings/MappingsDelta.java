@@ -0,0 +1,261 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.meta.CTags;
+import dev.silverandro.broadsword.meta.DataUtil;
+import dev.silverandro.broadsword.tools.UTF8Container;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * A set of added, changed, and removed entries that can be applied to a {@link MappingsSet} in place, for when a few
+ * mappings are edited between two remapping runs. Besides updating the set, a delta can tell which class files could
+ * remap differently because of it with {@link #affects(byte[])}, so only those have to go through the remapper again.
+ * <p>
+ * All names are in the source namespace of the set the delta is applied to. A {@code null} new name removes the entry.
+ */
+public final class MappingsDelta {
+    private static final byte CLASS = 0;
+    private static final byte FIELD = 1;
+    private static final byte METHOD = 2;
+    private static final byte MODULE = 3;
+    private static final byte PACKAGE = 4;
+
+    private final List<Change> changes = new ArrayList<>();
+
+    // What a class file has to mention to be affected, see affects
+    private final Set<UTF8Container> names = new HashSet<>();
+    private final List<byte[]> packagePrefixes = new ArrayList<>();
+    // Member names to the descriptors they were changed with, a null descriptor matches any
+    private final Map<UTF8Container, List<UTF8Container>> memberNames = new HashMap<>();
+
+    public void putClass(UTF8Container originalName, UTF8Container newName) {
+        changes.add(new Change(CLASS, null, originalName, null, newName));
+        names.add(originalName);
+    }
+
+    public void removeClass(UTF8Container originalName) {
+        putClass(originalName, null);
+    }
+
+    public void putField(UTF8Container parentClass, UTF8Container originalName, UTF8Container desc, UTF8Container newName) {
+        changes.add(new Change(FIELD, parentClass, originalName, desc, newName));
+        memberNames.computeIfAbsent(originalName, name -> new ArrayList<>(1)).add(desc);
+    }
+
+    public void removeField(UTF8Container parentClass, UTF8Container originalName, UTF8Container desc) {
+        putField(parentClass, originalName, desc, null);
+    }
+
+    public void putMethod(UTF8Container parentClass, UTF8Container originalName, UTF8Container desc, UTF8Container newName) {
+        changes.add(new Change(METHOD, parentClass, originalName, desc, newName));
+        memberNames.computeIfAbsent(originalName, name -> new ArrayList<>(1)).add(desc);
+    }
+
+    public void removeMethod(UTF8Container parentClass, UTF8Container originalName, UTF8Container desc) {
+        putMethod(parentClass, originalName, desc, null);
+    }
+
+    public void putModule(UTF8Container originalName, UTF8Container newName) {
+        changes.add(new Change(MODULE, null, originalName, null, newName));
+        names.add(originalName);
+    }
+
+    public void removeModule(UTF8Container originalName) {
+        putModule(originalName, null);
+    }
+
+    public void putPackage(UTF8Container originalName, UTF8Container newName) {
+        changes.add(new Change(PACKAGE, null, originalName, null, newName));
+        names.add(originalName);
+        var prefix = new byte[originalName.length() + 1];
+        System.arraycopy(originalName.getData(), 0, prefix, 0, originalName.length());
+        prefix[originalName.length()] = '/';
+        packagePrefixes.add(prefix);
+    }
+
+    public void removePackage(UTF8Container originalName) {
+        putPackage(originalName, null);
+    }
+
+    public boolean isEmpty() {
+        return changes.isEmpty();
+    }
+
+    public int size() {
+        return changes.size();
+    }
+
+    /**
+     * Computes the entries that turn {@code before} into {@code after}, such as two loads of a mappings file that was
+     * edited in between.
+     */
+    public static MappingsDelta between(MappingsSet before, MappingsSet after) {
+        var delta = new MappingsDelta();
+        diff(before::forEachClass, after::forEachClass, delta::putClass);
+        diff(before::forEachField, after::forEachField,
+                (key, newName) -> delta.putField(key.owner(), key.name(), key.desc(), newName));
+        diff(before::forEachMethod, after::forEachMethod,
+                (key, newName) -> delta.putMethod(key.owner(), key.name(), key.desc(), newName));
+        diff(before::forEachModule, after::forEachModule, delta::putModule);
+        diff(before::forEachPackage, after::forEachPackage, delta::putPackage);
+        return delta;
+    }
+
+    private static <K> void diff(
+            Consumer<BiConsumer<K, UTF8Container>> before,
+            Consumer<BiConsumer<K, UTF8Container>> after,
+            BiConsumer<K, UTF8Container> change
+    ) {
+        var old = new HashMap<K, UTF8Container>();
+        before.accept(old::put);
+        after.accept((key, newName) -> {
+            if (!newName.equals(old.remove(key))) change.accept(key, newName);
+        });
+        // Everything left was removed
+        old.keySet().forEach(key -> change.accept(key, null));
+    }
+
+    /**
+     * Applies every change to the set, in the order they were added. Memoized descriptors and signatures of the set are
+     * invalidated as usual.
+     * <p>
+     * Method mappings pushed down by {@link MappingsSet#propagateMethods} are not updated, propagate again after
+     * applying a delta that changes methods.
+     */
+    public void applyTo(MappingsSet set) {
+        for (var change : changes) {
+            if (change.newName == null) {
+                switch (change.kind) {
+                    case CLASS -> set.removeClass(change.name);
+                    case FIELD -> set.removeField(change.owner, change.name, change.desc);
+                    case METHOD -> set.removeMethod(change.owner, change.name, change.desc);
+                    case MODULE -> set.removeModule(change.name);
+                    case PACKAGE -> set.removePackage(change.name);
+                }
+            } else {
+                switch (change.kind) {
+                    case CLASS -> set.putClass(change.name, change.newName);
+                    case FIELD -> set.putField(change.owner, change.name, change.desc, change.newName);
+                    case METHOD -> set.putMethod(change.owner, change.name, change.desc, change.newName);
+                    case MODULE -> set.putModule(change.name, change.newName);
+                    case PACKAGE -> set.putPackage(change.name, change.newName);
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if remapping the class file could give a different result after this delta is applied. Only the constant
+     * pool is read: a class is affected if it mentions a changed class, module, or package by name or inside a
+     * descriptor or signature, or mentions the name of a changed member together with its descriptor. Owners of members
+     * aren't compared, since a reference through a subclass still resolves to the changed member.
+     * <p>
+     * This never misses an affected class, but can include a class that only happens to use the same names. Safe to
+     * call from several threads at once.
+     * @param classFile The bytes of a single class file, not modified
+     */
+    public boolean affects(byte[] classFile) {
+        var count = DataUtil.readShort(classFile, 8);
+        var probe = new NameProbe();
+        // Starts of the UTF8 entries, for matching member descriptors once the whole pool has been seen
+        var utf8Offsets = new int[count];
+        int utf8Count = 0;
+        List<UTF8Container> wantedDescs = null;
+
+        int position = 10;
+        int index = 1;
+        while (index < count) {
+            var tag = classFile[position++];
+            switch (tag) {
+                case CTags.UTF8 -> {
+                    var length = DataUtil.readShort(classFile, position);
+                    probe.setUtf8(classFile, position);
+                    utf8Offsets[utf8Count++] = position;
+                    position += 2 + length;
+
+                    if (mentionsName(probe)) return true;
+                    var descs = memberNames.get(probe);
+                    if (descs != null) {
+                        if (descs.contains(null)) return true;
+                        if (wantedDescs == null) wantedDescs = new ArrayList<>();
+                        wantedDescs.addAll(descs);
+                    }
+                }
+
+                case CTags.FIELD, CTags.INTEGER, CTags.FLOAT, CTags.METHOD, CTags.INTERFACE_METHOD, CTags.NAME_AND_TYPE, CTags.DYNAMIC, CTags.INVOKE_DYNAMIC -> position += 4;
+
+                case CTags.CLASS, CTags.STRING, CTags.METHOD_TYPE, CTags.MODULE, CTags.PACKAGE -> position += 2;
+
+                case CTags.LONG, CTags.DOUBLE -> {
+                    position += 8;
+                    index++;
+                }
+
+                case CTags.METHOD_HANDLE -> position += 3;
+
+                default -> throw new IllegalStateException("Unknown class file constant pool tag " + tag);
+            }
+            index++;
+        }
+
+        if (wantedDescs == null) return false;
+        for (int i = 0; i < utf8Count; i++) {
+            // The probe is on the left, so that contains compares by content
+            if (wantedDescs.contains(probe.setUtf8(classFile, utf8Offsets[i]))) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Filters a set of class files down to the ones {@link #affects(byte[]) affected} by this delta, checking them in
+     * parallel.
+     * @return The keys of the affected class files
+     */
+    public <K> Set<K> affected(Map<K, byte[]> classFiles) {
+        return classFiles.entrySet().parallelStream()
+                .filter(entry -> affects(entry.getValue()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toSet());
+    }
+
+    // Exact names, classes inside descriptors and signatures (Lname; or Lname<), and anything in a changed package
+    private boolean mentionsName(NameProbe probe) {
+        if (names.contains(probe)) return true;
+
+        var data = probe.data;
+        int end = probe.offset + probe.length;
+        if (!names.isEmpty()) {
+            var inner = new NameProbe();
+            for (int i = probe.offset; i < end; i++) {
+                if (data[i] != 'L') continue;
+                int nameEnd = i + 1;
+                while (nameEnd < end && data[nameEnd] != ';' && data[nameEnd] != '<') nameEnd++;
+                // Nothing after this can end a class name either
+                if (nameEnd == end) break;
+                if (names.contains(inner.set(data, i + 1, nameEnd - i - 1))) return true;
+            }
+        }
+
+        for (var prefix : packagePrefixes) {
+            for (int i = probe.offset; i + prefix.length <= end; i++) {
+                if (Arrays.equals(data, i, i + prefix.length, prefix, 0, prefix.length)) return true;
+            }
+        }
+        return false;
+    }
+
+    private record Change(byte kind, UTF8Container owner, UTF8Container name, UTF8Container desc, UTF8Container newName) {}
+}
@@ -4,24 +4,42 @@
 
 package dev.silverandro.broadsword.mappings;
 
+import dev.silverandro.broadsword.lookups.ClassMappingLookup;
 import dev.silverandro.broadsword.meta.DataUtil;
 import dev.silverandro.broadsword.tools.UTF8Container;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.Arrays;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.BiConsumer;
 
 /**
  * The base class of a mappings set. Provides the ability to store and remap classes, fields, methods, modules, and packages.
  */
 public class MappingsSet {
-    protected final Map<UTF8Container, UTF8Container> classMapping = new HashMap<>(1024, 0.7f);
-    protected final Map<OwnedType, UTF8Container> fieldMapping = new HashMap<>(2048, 0.7f);
-    protected final Map<OwnedType, UTF8Container> methodMapping = new HashMap<>(2048, 0.7f);
-    protected final Map<UTF8Container, UTF8Container> moduleMapping = new HashMap<>();
-    protected final Map<UTF8Container, UTF8Container> packageMapping = new HashMap<>();
+    /**
+     * Every name used by the tables below, interned once so that the tables only store symbol IDs.
+     */
+    protected final SymbolTable symbols = new SymbolTable();
+    protected final NameMap classMapping = new NameMap(symbols, 1024);
+    protected final MemberMap fieldMapping = new MemberMap(symbols, 2048);
+    protected final MemberMap methodMapping = new MemberMap(symbols, 2048);
+    protected final NameMap moduleMapping = new NameMap(symbols, 0);
+    protected final NameMap packageMapping = new NameMap(symbols, 0);
+
+    /**
+     * Classes that have had their inherited method mappings pushed down by
+     * {@link #propagateMethods(Collection, ClassMappingLookup)}.
+     */
+    protected final Set<UTF8Container> propagatedClasses = new HashSet<>();
+
+    private volatile DescriptorCache descriptorCache = new DescriptorCache(0);
+    private volatile DescriptorCache signatureCache = new DescriptorCache(0);
+    private volatile PackageTrie packageTrie = PackageTrie.EMPTY;
+    private volatile int packageTrieVersion = 0;
+    private volatile MemberNames memberNames = new MemberNames(-1, Set.of());
 
     protected boolean supportsFieldTypes() {
         return true;
@@ -33,51 +51,190 @@ public class MappingsSet {
     }
 
     public final UTF8Container remapClass(UTF8Container current) {
-        return classMapping.getOrDefault(current, current);
+        var remapped = remapClassOrNull(current);
+        return remapped == null ? current : remapped;
     }
 
+    /**
+     * Looks up the class, falling back to relocating it by its package if there is no mapping for the class itself.
+     * @return The new name, or {@code null} if the class is not mapped
+     */
     public final UTF8Container remapClassOrNull(UTF8Container current) {
-        return classMapping.get(current);
+        var remapped = findClass(current);
+        if (remapped == null) {
+            var trie = packageTrie();
+            // Getting the data copies a view, which is wasted if there are no packages to relocate by
+            if (!trie.isEmpty()) remapped = trie.relocate(current.getData(), 0, current.length());
+        }
+        return remapped;
     }
 
     public final UTF8Container remapField(UTF8Container parentClass, UTF8Container name, UTF8Container desc) {
-        return fieldMapping.getOrDefault(new OwnedType(parentClass, name, fieldType(desc)), name);
+        var remapped = remapFieldOrNull(parentClass, name, desc);
+        return remapped == null ? name : remapped;
     }
 
-    public final UTF8Container remapFieldOrNull(UTF8Container parentClass, UTF8Container name, UTF8Container desc) {
-        return fieldMapping.get(new OwnedType(parentClass, name, fieldType(desc)));
+    public UTF8Container remapFieldOrNull(UTF8Container parentClass, UTF8Container name, UTF8Container desc) {
+        return fieldMapping.get(parentClass, name, fieldType(desc));
     }
 
     public final UTF8Container remapMethod(UTF8Container parentClass, UTF8Container name, UTF8Container desc) {
-        return methodMapping.getOrDefault(new OwnedType(parentClass, name, desc), name);
+        var remapped = remapMethodOrNull(parentClass, name, desc);
+        return remapped == null ? name : remapped;
+    }
+
+    public UTF8Container remapMethodOrNull(UTF8Container parentClass, UTF8Container name, UTF8Container desc) {
+        return methodMapping.get(parentClass, name, desc);
+    }
+
+    /**
+     * Looks up the class named by the probe without allocating, unless it has to be relocated by its package.
+     * @return The new name, or {@code null} if the class is not mapped
+     */
+    public final UTF8Container remapClassOrNull(NameProbe current) {
+        var remapped = findClass(current);
+        if (remapped == null) {
+            remapped = packageTrie().relocate(current.data, current.offset, current.length);
+        }
+        return remapped;
+    }
+
+    /**
+     * Looks up the mapping of exactly this class, without considering packages.
+     */
+    protected UTF8Container findClass(UTF8Container current) {
+        return classMapping.get(current);
+    }
+
+    /**
+     * Looks up the mapping of exactly the class named by the probe, without considering packages.
+     */
+    protected UTF8Container findClass(NameProbe current) {
+        return classMapping.get(current);
+    }
+
+    /**
+     * The package mappings as a prefix trie, rebuilt whenever the package table changes.
+     */
+    PackageTrie packageTrie() {
+        var version = packageMapping.modifications();
+        if (packageTrieVersion != version) {
+            packageTrie = PackageTrie.of(this);
+            packageTrieVersion = version;
+        }
+        return packageTrie;
+    }
+
+    /**
+     * Looks up the field described by the probe without allocating.
+     * @return The new name, or {@code null} if the field is not mapped
+     */
+    public UTF8Container remapFieldOrNull(MemberProbe field) {
+        field.ignoreDesc = !supportsFieldTypes();
+        try {
+            return fieldMapping.get(field);
+        } finally {
+            field.ignoreDesc = false;
+        }
     }
 
-    public final UTF8Container remapMethodOrNull(UTF8Container parentClass, UTF8Container name, UTF8Container desc) {
-        return methodMapping.get(new OwnedType(parentClass, name, desc));
+    /**
+     * Looks up the method described by the probe without allocating.
+     * @return The new name, or {@code null} if the method is not mapped
+     */
+    public UTF8Container remapMethodOrNull(MemberProbe method) {
+        return methodMapping.get(method);
     }
 
+    /**
+     * Remaps every class referenced by a field or method descriptor. Results are memoized in a bounded cache, and if no
+     * class in the descriptor is mapped the same instance is returned.
+     */
     public final UTF8Container remapDescriptor(UTF8Container current) throws IOException {
-        var output = new ByteArrayOutputStream();
-        var currentData = current.getData();
-
-        int i = -1;
-        while (i++ < currentData.length - 1) {
-            var c = currentData[i];
-            output.write(c);
-            if (c == 'L') {
-                var end = DataUtil.indexOf(currentData, (byte)';', i + 2);
-                var remapped = remapClass(new UTF8Container(Arrays.copyOfRange(currentData, i + 1, end))).getData();
-                output.write(remapped);
-                output.write(';');
-                i = end;
+        return translateDescriptor(current);
+    }
+
+    // remapDescriptor without the checked exception, for use inside of lambdas
+    final UTF8Container translateDescriptor(UTF8Container current) {
+        var cache = descriptorCache;
+        var version = classVersion();
+        if (cache.version != version) {
+            descriptorCache = cache = new DescriptorCache(version);
+        }
+
+        var remapped = cache.get(current);
+        if (remapped == null) {
+            remapped = rewriteDescriptor(current);
+            cache.put(current, remapped);
+        }
+        return remapped;
+    }
+
+    private UTF8Container rewriteDescriptor(UTF8Container current) {
+        var data = current.getData();
+        var probe = new NameProbe();
+        Utf8Builder output = null;
+        // Everything before this has been written to the output
+        int copied = 0;
+
+        int i = 0;
+        while (i < data.length) {
+            if (data[i++] == 'L') {
+                var end = DataUtil.indexOf(data, (byte)';', i + 1);
+                var remapped = remapClassOrNull(probe.set(data, i, end - i));
+                if (remapped != null) {
+                    if (output == null) output = new Utf8Builder(data.length + 32);
+                    output.append(data, copied, i - copied);
+                    output.append(remapped);
+                    copied = end;
+                }
+                i = end + 1;
             }
         }
 
-        return new UTF8Container(output.toByteArray());
+        // Nothing was mapped, keep the original
+        if (output == null) return current;
+        output.append(data, copied, data.length - copied);
+        return output.toContainer();
+    }
+
+    /**
+     * A value that changes whenever the result of a class lookup might have changed, used to invalidate memoized
+     * descriptors. Sets that can't change after construction don't need to override this.
+     */
+    protected int classVersion() {
+        return classMapping.modifications() + packageMapping.modifications();
+    }
+
+    /**
+     * A value that changes whenever a field or method mapping might have changed, used to invalidate
+     * {@link #mapsMemberNamed}. Sets that can't change after construction don't need to override this.
+     */
+    protected int memberVersion() {
+        return fieldMapping.modifications() + methodMapping.modifications();
+    }
+
+    /**
+     * Checks if any field or method mapping has this original name, whatever its owner and descriptor. If it doesn't,
+     * no member with the name can be remapped, including through the hierarchy of its owner. The names are gathered
+     * the first time this is called after the set changes.
+     */
+    public boolean mapsMemberNamed(NameProbe name) {
+        var current = memberNames;
+        var version = memberVersion();
+        if (current.version != version) {
+            var names = new HashSet<UTF8Container>();
+            forEachField((key, newName) -> names.add(key.name()));
+            forEachMethod((key, newName) -> names.add(key.name()));
+            current = new MemberNames(version, names);
+            memberNames = current;
+        }
+        return current.names.contains(name);
     }
 
     public UTF8Container remapModule(UTF8Container current) {
-        return moduleMapping.getOrDefault(current, current);
+        var remapped = remapModuleOrNull(current);
+        return remapped == null ? current : remapped;
     }
 
     public UTF8Container remapModuleOrNull(UTF8Container current) {
@@ -85,33 +242,192 @@ public class MappingsSet {
     }
 
     public UTF8Container remapPackage(UTF8Container current) {
-        return packageMapping.getOrDefault(current, current);
+        var remapped = remapPackageOrNull(current);
+        return remapped == null ? current : remapped;
     }
 
     public UTF8Container remapPackageOrNull(UTF8Container current) {
         return packageMapping.get(current);
     }
 
+    /**
+     * Remaps every class referenced by a class, method, or field signature, as found in {@code Signature} attributes.
+     * Results are memoized like {@link #remapDescriptor(UTF8Container)}, and if no class in the signature is mapped the
+     * same instance is returned.
+     */
+    public final UTF8Container remapSignature(UTF8Container current) {
+        var cache = signatureCache;
+        var version = classVersion();
+        if (cache.version != version) {
+            signatureCache = cache = new DescriptorCache(version);
+        }
+
+        var remapped = cache.get(current);
+        if (remapped == null) {
+            remapped = SignatureRewriter.rewrite(this, current);
+            cache.put(current, remapped);
+        }
+        return remapped;
+    }
+
+    /**
+     * @deprecated Signatures of all kinds are handled by {@link #remapSignature(UTF8Container)}
+     */
+    @Deprecated
     public UTF8Container remapFieldSignature(UTF8Container current) throws IOException {
-        var output = new ByteArrayOutputStream();
-        var currentData = current.getData();
-
-        int i = -1;
-        while (i++ < currentData.length - 1) {
-            var c = currentData[i];
-            output.write(c);
-            if (c == 'L') {
-                var end = DataUtil.indexOf(currentData, (byte)';', i + 2);
-                var remapped = remapClass(new UTF8Container(Arrays.copyOfRange(currentData, i + 1, end))).getData();
-                output.write(remapped);
-                output.write(';');
-                i = end;
-            }
+        return remapSignature(current);
+    }
+
+    public void forEachClass(BiConsumer<UTF8Container, UTF8Container> action) {
+        classMapping.forEach(action);
+    }
+
+    /**
+     * Visits every field mapping. For sets without field types ({@code TSRG}) the descriptor of every key is {@code null}.
+     */
+    public void forEachField(BiConsumer<OwnedType, UTF8Container> action) {
+        fieldMapping.forEach(action);
+    }
+
+    public void forEachMethod(BiConsumer<OwnedType, UTF8Container> action) {
+        methodMapping.forEach(action);
+    }
+
+    public void forEachModule(BiConsumer<UTF8Container, UTF8Container> action) {
+        moduleMapping.forEach(action);
+    }
+
+    public void forEachPackage(BiConsumer<UTF8Container, UTF8Container> action) {
+        packageMapping.forEach(action);
+    }
+
+    /**
+     * Throws if this set can't be changed after construction.
+     */
+    void checkModifiable() {}
+
+    protected void putClass(UTF8Container originalName, UTF8Container newName) {
+        checkModifiable();
+        classMapping.put(originalName, newName);
+    }
+
+    protected void putField(UTF8Container parentClass, UTF8Container originalName, UTF8Container desc, UTF8Container newName) {
+        checkModifiable();
+        fieldMapping.put(parentClass, originalName, fieldType(desc), newName);
+    }
+
+    protected void putMethod(UTF8Container parentClass, UTF8Container originalName, UTF8Container desc, UTF8Container newName) {
+        checkModifiable();
+        methodMapping.put(parentClass, originalName, desc, newName);
+    }
+
+    protected void putModule(UTF8Container originalName, UTF8Container newName) {
+        checkModifiable();
+        moduleMapping.put(originalName, newName);
+    }
+
+    protected void putPackage(UTF8Container originalName, UTF8Container newName) {
+        checkModifiable();
+        packageMapping.put(originalName, newName);
+    }
+
+    /**
+     * Puts every entry of a batch filled by a parser thread, translating member descriptors with the class mappings of
+     * {@code descriptors} if it is not {@code null}. Sets that keep their mappings outside of the tables put each entry
+     * through their put methods instead.
+     */
+    void putBatch(MappingsBatch batch, MappingsSet descriptors) {
+        checkModifiable();
+        batch.copyInto(symbols, classMapping, fieldMapping, methodMapping, supportsFieldTypes(), descriptors);
+    }
+
+    protected void removeClass(UTF8Container originalName) {
+        checkModifiable();
+        classMapping.remove(originalName);
+    }
+
+    protected void removeField(UTF8Container parentClass, UTF8Container originalName, UTF8Container desc) {
+        checkModifiable();
+        fieldMapping.remove(parentClass, originalName, fieldType(desc));
+    }
+
+    protected void removeMethod(UTF8Container parentClass, UTF8Container originalName, UTF8Container desc) {
+        checkModifiable();
+        methodMapping.remove(parentClass, originalName, desc);
+    }
+
+    protected void removeModule(UTF8Container originalName) {
+        checkModifiable();
+        moduleMapping.remove(originalName);
+    }
+
+    protected void removePackage(UTF8Container originalName) {
+        checkModifiable();
+        packageMapping.remove(originalName);
+    }
+
+    /**
+     * Pushes method mappings down to every class in {@code classes} that overrides a mapped method of one of its
+     * parents, so that remapping those classes is a single direct lookup instead of a walk up the hierarchy for every
+     * unmapped method. Mappings a class already has are left alone.
+     * <p>
+     * Each class in the hierarchy is requested from {@code lookup} at most once. Classes in the {@code java} namespace
+     * are never requested.
+     * @param classes The names of the classes that will be remapped, in the origin namespace
+     * @param lookup Provides the hierarchy of the input classes and any of their parents
+     */
+    public void propagateMethods(Collection<UTF8Container> classes, ClassMappingLookup lookup) {
+        checkModifiable();
+        var propagator = new InheritancePropagator(this, lookup);
+        for (var className : classes) {
+            propagator.propagate(className);
+            propagatedClasses.add(className);
         }
+    }
 
-        return new UTF8Container(output.toByteArray());
+    /**
+     * @return If the class has had its inherited method mappings propagated, meaning that a method of it that has no
+     * direct mapping is not mapped at all
+     */
+    public boolean isPropagated(UTF8Container className) {
+        return propagatedClasses.contains(className);
     }
 
+    /**
+     * Flattens two chained sets, such as {@code official -> intermediary} and {@code intermediary -> named}, into a
+     * single set so that one remapping pass covers the whole chain. Keys are in the source namespace of {@code first}
+     * and names are in the target namespace of {@code second}, with member descriptors translated through the middle
+     * namespace to look them up in {@code second}.
+     * <p>
+     * Entries only {@code second} has are included when {@code first} leaves their name unchanged. Module and package
+     * mappings are composed by their exact names. The result is a new set, neither input is modified.
+     */
+    public static CustomMappingsSet compose(MappingsSet first, MappingsSet second) {
+        return Composition.compose(first, second);
+    }
+
+    /**
+     * Builds the reverse of this set, remapping from the target namespace back to the source namespace. Member owners
+     * and descriptors are translated into the target namespace so that they match what remapped class files contain.
+     * If two entries map to the same name, only one of them survives.
+     * <p>
+     * The translation runs in parallel, so this set must not be modified until the inversion returns. The result is a
+     * new set, this one is not modified.
+     */
+    public CustomMappingsSet invert() {
+        return Inversion.invert(this);
+    }
+
+    /**
+     * Creates an immutable snapshot of this set that is laid out for fast lookups. The snapshot shares no mutable state
+     * with this set and can be freely shared between threads. Changes made to this set afterwards are not reflected.
+     */
+    public FrozenMappingsSet freeze() {
+        return new FrozenMappingsSet(this);
+    }
+
+    private record MemberNames(int version, Set<UTF8Container> names) {}
+
     /**
      * Common type used to represent fields and methods for remapping. Whether this is a field or method is entirely contextual.
      * @param owner The owner class
@@ -119,6 +435,18 @@ public class MappingsSet {
      * @param desc The descriptor of the type
      */
     public record OwnedType(UTF8Container owner, UTF8Container name, UTF8Container desc) {
+        /**
+         * Fixed so that {@link MemberProbe} can produce the same hash from raw bytes.
+         */
+        static int hash(int ownerHash, int nameHash, int descHash) {
+            return 31 * (31 * ownerHash + nameHash) + descHash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash(Objects.hashCode(owner), Objects.hashCode(name), Objects.hashCode(desc));
+        }
+
         public static OwnedType of(String owner, String origName, String desc) {
             if (desc == null) {
                 return new OwnedType(new UTF8Container(owner), new UTF8Container(origName), null);
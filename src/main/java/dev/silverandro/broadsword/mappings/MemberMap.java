@@ -0,0 +1,201 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.mappings.MappingsSet.OwnedType;
+import dev.silverandro.broadsword.tools.UTF8Container;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * A mapping table from an (owner, name, desc) tuple of symbol IDs to a new name, stored as flat int arrays. Used for
+ * fields and methods. A missing descriptor is stored as {@link #NO_DESC}.
+ * <p>
+ * The arrays are only allocated by the first write, so a mappings set that never fills this table does not pay for it.
+ * <p>
+ * Not thread safe for writing, but lookups are safe once the table is no longer modified.
+ */
+public final class MemberMap {
+    public static final int NO_DESC = -1;
+    private static final int EMPTY = -1;
+    private static final int[] NONE = new int[0];
+
+    private final SymbolTable symbols;
+    private final int bits;
+    // Triples of (owner, name, desc), an empty slot has an owner of EMPTY
+    private int[] keys = NONE;
+    private int[] values = NONE;
+    private int shift;
+    private int size;
+    private int modifications;
+
+    MemberMap(SymbolTable symbols, int expectedSize) {
+        this.symbols = symbols;
+        this.bits = FlatTable.bitsFor(expectedSize);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Incremented on every write, lets cached lookups notice that they are stale.
+     */
+    public int modifications() {
+        return modifications;
+    }
+
+    public void put(OwnedType key, UTF8Container value) {
+        put(key.owner(), key.name(), key.desc(), value);
+    }
+
+    /**
+     * @param desc The descriptor, or {@code null} for an entry without one
+     */
+    public void put(UTF8Container owner, UTF8Container name, UTF8Container desc, UTF8Container value) {
+        put(
+                symbols.intern(owner),
+                symbols.intern(name),
+                desc == null ? NO_DESC : symbols.intern(desc),
+                symbols.intern(value)
+        );
+    }
+
+    public void put(int owner, int name, int desc, int value) {
+        if (keys == NONE) {
+            keys = new int[3 << bits];
+            values = new int[1 << bits];
+            shift = 32 - bits;
+            Arrays.fill(keys, EMPTY);
+        }
+        int slot = slotOf(owner, name, desc);
+        if (keys[slot * 3] == EMPTY) {
+            keys[slot * 3] = owner;
+            keys[slot * 3 + 1] = name;
+            keys[slot * 3 + 2] = desc;
+            size++;
+        }
+        values[slot] = value;
+        modifications++;
+        if (size * 2 > values.length) {
+            rehash();
+        }
+    }
+
+    /**
+     * @param desc The descriptor, or {@code null} for an entry without one
+     */
+    public void remove(UTF8Container owner, UTF8Container name, UTF8Container desc) {
+        var descId = NO_DESC;
+        if (desc != null) {
+            descId = symbols.find(desc);
+            if (descId == EMPTY) return;
+        }
+        remove(symbols.find(owner), symbols.find(name), descId);
+    }
+
+    public void remove(int owner, int name, int desc) {
+        if (owner < 0 || name < 0 || size == 0) return;
+        int slot = slotOf(owner, name, desc);
+        if (keys[slot * 3] == EMPTY) return;
+        size--;
+        modifications++;
+
+        // Shift later entries of the probe run back into the hole, so that lookups for them don't stop early
+        int mask = values.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next * 3] != EMPTY; next = (next + 1) & mask) {
+            int home = FlatTable.index((keys[next * 3] * 31 + keys[next * 3 + 1]) * 31 + keys[next * 3 + 2], shift);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole * 3] = keys[next * 3];
+                keys[hole * 3 + 1] = keys[next * 3 + 1];
+                keys[hole * 3 + 2] = keys[next * 3 + 2];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole * 3] = EMPTY;
+    }
+
+    /**
+     * @return The symbol ID of the new name, or {@code -1}
+     */
+    public int get(int owner, int name, int desc) {
+        if (owner < 0 || name < 0 || size == 0) return EMPTY;
+        int slot = slotOf(owner, name, desc);
+        return keys[slot * 3] == EMPTY ? EMPTY : values[slot];
+    }
+
+    /**
+     * @param desc The descriptor, or {@code null} to look up an entry without one
+     */
+    public UTF8Container get(UTF8Container owner, UTF8Container name, UTF8Container desc) {
+        var descId = NO_DESC;
+        if (desc != null) {
+            descId = symbols.find(desc);
+            if (descId == EMPTY) return null;
+        }
+        var ownerId = symbols.find(owner);
+        if (ownerId == EMPTY) return null;
+        return symbol(get(ownerId, symbols.find(name), descId));
+    }
+
+    public UTF8Container get(MemberProbe key) {
+        var desc = NO_DESC;
+        if (!key.ignoreDesc) {
+            desc = symbols.find(key.desc);
+            if (desc == EMPTY) return null;
+        }
+        var owner = symbols.find(key.owner);
+        if (owner == EMPTY) return null;
+        return symbol(get(owner, symbols.find(key.name), desc));
+    }
+
+    public void forEach(BiConsumer<OwnedType, UTF8Container> action) {
+        for (int i = 0; i < values.length; i++) {
+            if (keys[i * 3] != EMPTY) {
+                var desc = keys[i * 3 + 2];
+                action.accept(new OwnedType(
+                        symbols.get(keys[i * 3]),
+                        symbols.get(keys[i * 3 + 1]),
+                        desc == NO_DESC ? null : symbols.get(desc)
+                ), symbols.get(values[i]));
+            }
+        }
+    }
+
+    private UTF8Container symbol(int id) {
+        return id == EMPTY ? null : symbols.get(id);
+    }
+
+    // Returns the slot holding the key, or the empty slot it would go in
+    private int slotOf(int owner, int name, int desc) {
+        int slot = FlatTable.index((owner * 31 + name) * 31 + desc, shift);
+        int current;
+        while ((current = keys[slot * 3]) != EMPTY) {
+            if (current == owner && keys[slot * 3 + 1] == name && keys[slot * 3 + 2] == desc) break;
+            slot = (slot + 1) & (values.length - 1);
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        var oldKeys = keys;
+        var oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(keys, EMPTY);
+        shift--;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldKeys[i * 3] == EMPTY) continue;
+            int slot = slotOf(oldKeys[i * 3], oldKeys[i * 3 + 1], oldKeys[i * 3 + 2]);
+            keys[slot * 3] = oldKeys[i * 3];
+            keys[slot * 3 + 1] = oldKeys[i * 3 + 1];
+            keys[slot * 3 + 2] = oldKeys[i * 3 + 2];
+            values[slot] = oldValues[i];
+        }
+    }
+}
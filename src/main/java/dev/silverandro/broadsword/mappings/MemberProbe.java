@@ -0,0 +1,56 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.mappings.MappingsSet.OwnedType;
+
+/**
+ * A reusable lookup key for fields and methods, made of three {@link NameProbe}s for the owner, name, and descriptor.
+ * Looking a probe up in a {@link MappingsSet} behaves as if an {@link OwnedType} with the same content was used, but
+ * without allocating anything.
+ * <p>
+ * Probes are mutable and not thread safe, each remapping thread should own its own.
+ */
+public final class MemberProbe {
+    public final NameProbe owner = new NameProbe();
+    public final NameProbe name = new NameProbe();
+    public final NameProbe desc = new NameProbe();
+
+    // Set by the mappings set for the duration of a lookup, for formats without field descriptors
+    boolean ignoreDesc;
+
+    /**
+     * Drops the references to the data the parts were pointed at, see {@link NameProbe#clear()}.
+     */
+    public void clear() {
+        owner.clear();
+        name.clear();
+        desc.clear();
+    }
+
+    @Override
+    public int hashCode() {
+        return OwnedType.hash(owner.hashCode(), name.hashCode(), ignoreDesc ? 0 : desc.hashCode());
+    }
+
+    /**
+     * Only ever equal to an {@link OwnedType} with the same content, see {@link NameProbe#equals(Object)}.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof OwnedType type)) return false;
+        if (ignoreDesc) {
+            if (type.desc() != null) return false;
+        } else {
+            if (type.desc() == null || !desc.matches(type.desc())) return false;
+        }
+        return owner.matches(type.owner()) && name.matches(type.name());
+    }
+
+    @Override
+    public String toString() {
+        return owner + "." + name + (ignoreDesc ? "" : ":" + desc);
+    }
+}
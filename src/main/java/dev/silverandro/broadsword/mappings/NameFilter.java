@@ -0,0 +1,58 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+/**
+ * A bloom filter over the hashes of the keys of a {@link FlatTable}, used by {@link FrozenMappingsSet} to turn away
+ * lookups of names that were never mapped, such as anything in the JDK or a library, before touching the table.
+ * <p>
+ * Every key sets three bits inside one {@code long}, so a check is a single memory access and a mask compare. At 16 bits
+ * per key fewer than one miss in a hundred gets through to the table, and a mapped key is never turned away. Member keys
+ * are filtered by owner and name only, so that fields without descriptors share the same filter.
+ */
+final class NameFilter {
+    private static final int BITS_PER_KEY = 16;
+
+    private final long[] words;
+    private final int shift;
+
+    NameFilter(int size) {
+        int bits = 1;
+        while ((1L << bits) * Long.SIZE < (long) size * BITS_PER_KEY) bits++;
+        words = new long[1 << bits];
+        shift = Long.SIZE - bits;
+    }
+
+    static int memberHash(int ownerHash, int nameHash) {
+        return 31 * ownerHash + nameHash;
+    }
+
+    void add(int hash) {
+        long mixed = mix(hash);
+        words[(int) (mixed >>> shift)] |= mask(mixed);
+    }
+
+    /**
+     * @return {@code false} if no key with this hash was added, {@code true} if one might have been
+     */
+    boolean mightContain(int hash) {
+        long mixed = mix(hash);
+        long mask = mask(mixed);
+        return (words[(int) (mixed >>> shift)] & mask) == mask;
+    }
+
+    boolean mightContain(MemberProbe member) {
+        return mightContain(memberHash(member.owner.hashCode(), member.name.hashCode()));
+    }
+
+    // The top bits pick the word, the middle bits pick the three bits in it
+    private static long mix(int hash) {
+        return (hash & 0xFFFFFFFFL) * 0x9E3779B97F4A7C15L;
+    }
+
+    private static long mask(long mixed) {
+        return 1L << (mixed >>> 20) | 1L << (mixed >>> 26) | 1L << (mixed >>> 32);
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.tools.UTF8Container;
+
+import java.util.Arrays;
+import java.util.function.BiConsumer;
+
+/**
+ * A mapping table from one symbol of a {@link SymbolTable} to another, stored as two flat int arrays. Used for classes,
+ * modules, and packages.
+ * <p>
+ * The arrays are only allocated by the first write, so a mappings set that never fills this table does not pay for it.
+ * <p>
+ * Not thread safe for writing, but lookups are safe once the table is no longer modified.
+ */
+public final class NameMap {
+    private static final int EMPTY = -1;
+    private static final int[] NONE = new int[0];
+
+    private final SymbolTable symbols;
+    private final int bits;
+    private int[] keys = NONE;
+    private int[] values = NONE;
+    private int shift;
+    private int size;
+    private int modifications;
+
+    NameMap(SymbolTable symbols, int expectedSize) {
+        this.symbols = symbols;
+        this.bits = FlatTable.bitsFor(expectedSize);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Incremented on every write, lets cached lookups notice that they are stale.
+     */
+    public int modifications() {
+        return modifications;
+    }
+
+    public void put(UTF8Container key, UTF8Container value) {
+        put(symbols.intern(key), symbols.intern(value));
+    }
+
+    public void put(int key, int value) {
+        if (keys == NONE) {
+            keys = new int[1 << bits];
+            values = new int[1 << bits];
+            shift = 32 - bits;
+            Arrays.fill(keys, EMPTY);
+        }
+        int slot = slotOf(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            size++;
+        }
+        values[slot] = value;
+        modifications++;
+        if (size * 2 > keys.length) {
+            rehash();
+        }
+    }
+
+    public void remove(UTF8Container key) {
+        remove(symbols.find(key));
+    }
+
+    public void remove(int key) {
+        if (key < 0 || size == 0) return;
+        int slot = slotOf(key);
+        if (keys[slot] == EMPTY) return;
+        size--;
+        modifications++;
+
+        // Shift later entries of the probe run back into the hole, so that lookups for them don't stop early
+        int mask = keys.length - 1;
+        int hole = slot;
+        for (int next = (hole + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+            int home = FlatTable.index(keys[next], shift);
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+        }
+        keys[hole] = EMPTY;
+    }
+
+    /**
+     * @return The symbol ID {@code key} maps to, or {@code -1}
+     */
+    public int get(int key) {
+        if (key < 0 || size == 0) return EMPTY;
+        int slot = slotOf(key);
+        return keys[slot] == EMPTY ? EMPTY : values[slot];
+    }
+
+    public UTF8Container get(UTF8Container key) {
+        return symbol(get(symbols.find(key)));
+    }
+
+    public UTF8Container get(NameProbe key) {
+        return symbol(get(symbols.find(key)));
+    }
+
+    public void forEach(BiConsumer<UTF8Container, UTF8Container> action) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != EMPTY) {
+                action.accept(symbols.get(keys[i]), symbols.get(values[i]));
+            }
+        }
+    }
+
+    private UTF8Container symbol(int id) {
+        return id == EMPTY ? null : symbols.get(id);
+    }
+
+    // Returns the slot holding the key, or the empty slot it would go in
+    private int slotOf(int key) {
+        int slot = FlatTable.index(key, shift);
+        int current;
+        while ((current = keys[slot]) != EMPTY && current != key) {
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        return slot;
+    }
+
+    private void rehash() {
+        var oldKeys = keys;
+        var oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        Arrays.fill(keys, EMPTY);
+        shift--;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == EMPTY) continue;
+            int slot = slotOf(oldKeys[i]);
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+        }
+    }
+}
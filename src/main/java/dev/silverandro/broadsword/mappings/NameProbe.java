@@ -0,0 +1,80 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.tools.UTF8Container;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A reusable lookup key over a slice of a byte array, usually a {@code CONSTANT_Utf8_info} inside a class file. Looking
+ * a probe up in a {@link MappingsSet} behaves as if a {@link UTF8Container} holding the same bytes was used, but without
+ * copying the bytes or allocating a key.
+ * <p>
+ * Probes are mutable and not thread safe, each remapping thread should own its own.
+ */
+public final class NameProbe {
+    private static final byte[] EMPTY = new byte[0];
+
+    byte[] data;
+    int offset;
+    int length;
+    private int hash;
+
+    /**
+     * Points this probe at {@code data[offset, offset + length)}.
+     */
+    public NameProbe set(byte[] data, int offset, int length) {
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+        this.hash = UTF8Container.hashOf(data, offset, length);
+        return this;
+    }
+
+    /**
+     * Points this probe at the content of the {@code CONSTANT_Utf8_info} whose length field starts at {@code entryOffset}.
+     */
+    public NameProbe setUtf8(byte[] classFile, int entryOffset) {
+        return set(classFile, entryOffset + 2, (classFile[entryOffset] & 0xff) << 8 | (classFile[entryOffset + 1] & 0xff));
+    }
+
+    /**
+     * Drops the reference to the data this probe was pointed at, so that it doesn't keep it alive.
+     */
+    public void clear() {
+        set(EMPTY, 0, 0);
+    }
+
+    public boolean startsWith(char c) {
+        return length > 0 && data[offset] == c;
+    }
+
+    boolean matches(UTF8Container container) {
+        return container.contentEquals(data, offset, length);
+    }
+
+    /**
+     * Same as {@link UTF8Container#hashCode()} for a container with the same content.
+     */
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Only ever equal to a {@link UTF8Container} with the same content. This is deliberately one sided so that a probe
+     * can be handed to {@link java.util.Map#get(Object)} in place of a real key.
+     */
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof UTF8Container container && matches(container);
+    }
+
+    @Override
+    public String toString() {
+        return new String(data, offset, length, StandardCharsets.UTF_8);
+    }
+}
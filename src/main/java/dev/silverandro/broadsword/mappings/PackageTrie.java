@@ -0,0 +1,99 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.tools.UTF8Container;
+
+import java.util.Arrays;
+
+/**
+ * A byte level prefix trie over package mappings, used to relocate classes whose package (or any parent package) is
+ * mapped without listing every class. The longest mapped package wins, so {@code com/foo -> shaded/com/foo} moves
+ * {@code com/foo/bar/Baz} to {@code shaded/com/foo/bar/Baz} unless {@code com/foo/bar} has a mapping of its own.
+ * <p>
+ * Immutable once built, and safe to share between threads.
+ */
+final class PackageTrie {
+    static final PackageTrie EMPTY = new PackageTrie();
+
+    private final Node root = new Node();
+    private boolean empty = true;
+
+    private PackageTrie() {}
+
+    static PackageTrie of(MappingsSet set) {
+        var trie = new PackageTrie();
+        set.forEachPackage(trie::put);
+        return trie;
+    }
+
+    boolean isEmpty() {
+        return empty;
+    }
+
+    /**
+     * Relocates the class named by {@code data[offset, offset + length)}.
+     * @return The relocated class name, or {@code null} if no package of it is mapped
+     */
+    UTF8Container relocate(byte[] data, int offset, int length) {
+        if (empty) return null;
+
+        var node = root;
+        UTF8Container target = null;
+        int matched = 0;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            // A package only matches up to a / so that com/foo never matches com/foobar/Baz
+            if (data[i] == '/' && node.target != null) {
+                target = node.target;
+                matched = i - offset;
+            }
+            node = node.child(data[i]);
+            if (node == null) break;
+        }
+        if (target == null) return null;
+
+        var out = new byte[target.length() + length - matched];
+        System.arraycopy(target.getData(), 0, out, 0, target.length());
+        System.arraycopy(data, offset + matched, out, target.length(), length - matched);
+        return new UTF8Container(out);
+    }
+
+    private void put(UTF8Container packageName, UTF8Container target) {
+        if (packageName.length() == 0) return;
+        var node = root;
+        for (var b : packageName.getData()) {
+            node = node.childOrCreate(b);
+        }
+        node.target = target;
+        empty = false;
+    }
+
+    private static final class Node {
+        private byte[] keys = new byte[0];
+        private Node[] children = new Node[0];
+        private UTF8Container target;
+
+        Node child(byte b) {
+            // Package names branch very little, a linear scan beats anything clever
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == b) return children[i];
+            }
+            return null;
+        }
+
+        Node childOrCreate(byte b) {
+            var child = child(b);
+            if (child == null) {
+                child = new Node();
+                keys = Arrays.copyOf(keys, keys.length + 1);
+                children = Arrays.copyOf(children, children.length + 1);
+                keys[keys.length - 1] = b;
+                children[children.length - 1] = child;
+            }
+            return child;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.tools.UTF8Container;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.stream.Stream;
+
+/**
+ * ProGuard mappings, such as the {@code client.txt} files Mojang publishes. The file maps readable names to obfuscated
+ * ones, this set remaps the other way, from the obfuscated namespace to the readable one.
+ * <p>
+ * Member types are written as java source types ({@code java.lang.String[]}) in the readable namespace. They are kept
+ * as raw bytes while the file streams past, and converted to obfuscated descriptors in one go once every class name is
+ * known.
+ */
+public final class ProguardMappings extends MappingsSet {
+    private static final byte[][] PRIMITIVES = Stream.of("int", "boolean", "void", "long", "float", "double", "byte", "char", "short")
+            .map(name -> name.getBytes(StandardCharsets.UTF_8))
+            .toArray(byte[][]::new);
+    private static final byte[] PRIMITIVE_DESCRIPTORS = new byte[] { 'I', 'Z', 'V', 'J', 'F', 'D', 'B', 'C', 'S' };
+
+    public void parseMappingsFile(File file) {
+        try {
+            parseMappingsFile(file.toPath());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void parseMappingsFile(Path path) throws IOException {
+        try (var input = Files.newInputStream(path)) {
+            parse(input);
+        }
+    }
+
+    void parse(InputStream input) throws IOException {
+        var parser = new FileParser(new LineReader(input));
+        parser.parse();
+        parser.finish();
+    }
+
+    private final class FileParser {
+        private final LineReader reader;
+        // Readable to obfuscated class names, used to translate member types at the end
+        private final CustomMappingsSet obfuscatedClasses = new CustomMappingsSet();
+        private UTF8Container currentClass;
+
+        // (owner, obfuscated name, readable name, type, parameters) per member, parameters are null for fields
+        private UTF8Container[] pending = new UTF8Container[5 * 1024];
+        private int pendingLength;
+
+        FileParser(LineReader reader) {
+            this.reader = reader;
+        }
+
+        void parse() throws IOException {
+            while (reader.next()) {
+                var data = reader.buffer;
+                int start = reader.start;
+                int end = reader.end;
+                if (start == end || data[start] == '#') continue;
+
+                if (data[start] == ' ' || data[start] == '\t') {
+                    while (start < end && (data[start] == ' ' || data[start] == '\t')) start++;
+                    if (currentClass != null) readMember(data, start, end);
+                } else {
+                    readClass(data, start, end);
+                }
+            }
+        }
+
+        // readable.Name -> obf:
+        private void readClass(byte[] data, int start, int end) {
+            int arrow = indexOfArrow(data, start, end);
+            if (arrow < 0) return;
+            if (data[end - 1] == ':') end--;
+
+            var readable = internalName(data, start, arrow);
+            currentClass = internalName(data, arrow + 4, end);
+            if (!readable.equals(currentClass)) {
+                putClass(currentClass, readable);
+                obfuscatedClasses.putClass(readable, currentClass);
+            }
+        }
+
+        // [from:to:]type name[(params)[:from:to]] -> obf
+        private void readMember(byte[] data, int start, int end) {
+            int arrow = indexOfArrow(data, start, end);
+            if (arrow < 0) return;
+
+            // Line numbers of methods
+            if (data[start] >= '0' && data[start] <= '9') {
+                start = indexOf(data, start, arrow, (byte) ':') + 1;
+                start = indexOf(data, start, arrow, (byte) ':') + 1;
+            }
+
+            int typeEnd = indexOf(data, start, arrow, (byte) ' ');
+            int nameStart = typeEnd + 1;
+            int paren = indexOf(data, nameStart, arrow, (byte) '(');
+            var readable = slice(data, nameStart, paren);
+            var obfuscated = slice(data, arrow + 4, end);
+            if (readable.startsWith('<') || readable.equals(obfuscated)) return;
+
+            UTF8Container params = null;
+            if (paren < arrow) {
+                params = slice(data, paren + 1, indexOf(data, paren, arrow, (byte) ')'));
+            }
+
+            if (pendingLength + 5 > pending.length) pending = Arrays.copyOf(pending, pending.length * 2);
+            pending[pendingLength++] = currentClass;
+            pending[pendingLength++] = obfuscated;
+            pending[pendingLength++] = readable;
+            pending[pendingLength++] = slice(data, start, typeEnd);
+            pending[pendingLength++] = params;
+        }
+
+        // Every class is known now, so member types can be turned into obfuscated descriptors
+        void finish() {
+            var builder = new Utf8Builder(64);
+            for (int i = 0; i < pendingLength; i += 5) {
+                var params = pending[i + 4];
+                builder.reset();
+                if (params == null) {
+                    appendDescriptor(builder, pending[i + 3].getData(), 0, pending[i + 3].length());
+                } else {
+                    builder.append((byte) '(');
+                    var data = params.getData();
+                    int from = 0;
+                    while (from < data.length) {
+                        int comma = indexOf(data, from, data.length, (byte) ',');
+                        appendDescriptor(builder, data, from, comma);
+                        from = comma + 1;
+                    }
+                    builder.append((byte) ')');
+                    appendDescriptor(builder, pending[i + 3].getData(), 0, pending[i + 3].length());
+                }
+
+                var desc = obfuscatedClasses.translateDescriptor(builder.toContainer());
+                if (params == null) {
+                    putField(pending[i], pending[i + 1], desc, pending[i + 2]);
+                } else {
+                    putMethod(pending[i], pending[i + 1], desc, pending[i + 2]);
+                }
+            }
+            pending = null;
+        }
+    }
+
+    // Turns a java source type in data[from, to) into a descriptor, such as int[] to [I
+    private static void appendDescriptor(Utf8Builder builder, byte[] data, int from, int to) {
+        while (to - from > 2 && data[to - 2] == '[' && data[to - 1] == ']') {
+            builder.append((byte) '[');
+            to -= 2;
+        }
+
+        for (int i = 0; i < PRIMITIVES.length; i++) {
+            if (Arrays.equals(data, from, to, PRIMITIVES[i], 0, PRIMITIVES[i].length)) {
+                builder.append(PRIMITIVE_DESCRIPTORS[i]);
+                return;
+            }
+        }
+
+        builder.append((byte) 'L');
+        for (int i = from; i < to; i++) {
+            builder.append(data[i] == '.' ? (byte) '/' : data[i]);
+        }
+        builder.append((byte) ';');
+    }
+
+    private static int indexOfArrow(byte[] data, int from, int end) {
+        for (int i = from; i + 3 < end; i++) {
+            if (data[i] == ' ' && data[i + 1] == '-' && data[i + 2] == '>' && data[i + 3] == ' ') return i;
+        }
+        return -1;
+    }
+
+    private static int indexOf(byte[] data, int from, int end, byte c) {
+        for (int i = from; i < end; i++) {
+            if (data[i] == c) return i;
+        }
+        return end;
+    }
+
+    private static UTF8Container slice(byte[] data, int from, int to) {
+        return new UTF8Container(Arrays.copyOfRange(data, from, to));
+    }
+
+    // Class names are written with dots
+    private static UTF8Container internalName(byte[] data, int from, int to) {
+        var out = Arrays.copyOfRange(data, from, to);
+        for (int i = 0; i < out.length; i++) {
+            if (out[i] == '.') out[i] = '/';
+        }
+        return new UTF8Container(out);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Reads another stream on a background thread, a few blocks ahead of the consumer. Wrapping a decompressing stream
+ * ({@link java.util.zip.GZIPInputStream}, a {@link java.util.zip.ZipInputStream} positioned on an entry) in this lets
+ * decompression run at the same time as parsing, without writing anything to disk.
+ * <p>
+ * Anything the background thread throws, including unchecked exceptions, is rethrown to the consumer once it reaches
+ * that point of the stream. Closing this stops the background thread and waits for it to finish with the source, but
+ * does not close the source, which belongs to the caller.
+ */
+final class ReadAheadInputStream extends InputStream {
+    private static final int BLOCK_SIZE = 1 << 18;
+    private static final int BLOCKS_AHEAD = 4;
+    // Marks the end of the source, compared by identity
+    private static final byte[] END = new byte[0];
+
+    // What the producer is doing, so that close() only interrupts it while it waits for room and never during a read,
+    // which would close an interruptible source such as a channel
+    private static final int READING = 0;
+    private static final int WAITING = 1;
+    private static final int CLOSED = 2;
+
+    private final BlockingQueue<Object> blocks = new ArrayBlockingQueue<>(BLOCKS_AHEAD);
+    private final AtomicInteger state = new AtomicInteger(READING);
+    private final Thread producer;
+
+    private byte[] block;
+    private int position;
+    private boolean finished;
+
+    ReadAheadInputStream(InputStream source) {
+        producer = new Thread(() -> produce(source), "broadsword-read-ahead");
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    private void produce(InputStream source) {
+        try {
+            while (true) {
+                var block = source.readNBytes(BLOCK_SIZE);
+                if (block.length == 0) {
+                    post(END);
+                    return;
+                }
+                if (!post(block)) return;
+            }
+        } catch (Throwable t) {
+            // Anything left uncaught here would leave the consumer waiting forever
+            post(t);
+        }
+    }
+
+    // Queues a block, the end, or the failure of the source, returns false once the stream has been closed
+    private boolean post(Object item) {
+        if (!state.compareAndSet(READING, WAITING)) return false;
+        try {
+            blocks.put(item);
+        } catch (InterruptedException e) {
+            // Only close() interrupts, and only while waiting here
+            return false;
+        }
+        return state.compareAndSet(WAITING, READING);
+    }
+
+    // Makes sure there is something left in the current block, returns false at the end of the source
+    private boolean ensureBlock() throws IOException {
+        if (finished) return false;
+        if (block != null && position < block.length) return true;
+
+        Object next;
+        try {
+            next = blocks.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for input", e);
+        }
+        if (next instanceof Throwable t) {
+            finished = true;
+            if (t instanceof RuntimeException e) throw e;
+            if (t instanceof Error e) throw e;
+            throw new IOException("Reading the source failed", t);
+        }
+        block = (byte[]) next;
+        position = 0;
+        if (block == END) {
+            finished = true;
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!ensureBlock()) return -1;
+        return block[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) return 0;
+        if (!ensureBlock()) return -1;
+        var count = Math.min(len, block.length - position);
+        System.arraycopy(block, position, b, off, count);
+        position += count;
+        return count;
+    }
+
+    @Override
+    public void close() {
+        finished = true;
+        block = null;
+        // A producer in the middle of a read stops once the read returns
+        if (state.getAndSet(CLOSED) == WAITING) producer.interrupt();
+        try {
+            producer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        blocks.clear();
+    }
+}
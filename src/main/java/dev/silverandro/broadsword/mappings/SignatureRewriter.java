@@ -0,0 +1,234 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.tools.UTF8Container;
+
+import java.util.Arrays;
+
+/**
+ * Remaps the class names inside a generic signature in one forward scan. Handles the full class, method, and field
+ * signature grammar, including type arguments, wildcards, type variables, and inner class suffixes
+ * ({@code LOuter<TT;>.Inner;}).
+ * <p>
+ * Only the spans that actually change are written out, so a signature that references no mapped class comes back as the
+ * same instance.
+ * <a href="https://docs.oracle.com/javase/specs/jvms/se20/html/jvms-4.html#jvms-4.7.9.1">See the class file spec</a>
+ */
+final class SignatureRewriter {
+    private static final byte[] DOLLAR = new byte[] { '$' };
+
+    private final MappingsSet mappings;
+    private final byte[] data;
+    private final NameProbe probe = new NameProbe();
+    private int pos;
+
+    // Only allocated once something changes
+    private Utf8Builder output;
+    // Everything before this has been written to the output
+    private int copied;
+
+    // Scratch space for the original and remapped names of the class currently being read, inner classes are built up
+    // one suffix at a time
+    private byte[] originalName = new byte[64];
+    private int originalLength;
+    private byte[] remappedName = new byte[64];
+    private int remappedLength;
+
+    private SignatureRewriter(MappingsSet mappings, byte[] data) {
+        this.mappings = mappings;
+        this.data = data;
+    }
+
+    static UTF8Container rewrite(MappingsSet mappings, UTF8Container signature) {
+        var rewriter = new SignatureRewriter(mappings, signature.getData());
+        rewriter.signature();
+        if (rewriter.output == null) return signature;
+        rewriter.output.append(rewriter.data, rewriter.copied, rewriter.data.length - rewriter.copied);
+        return rewriter.output.toContainer();
+    }
+
+    private void signature() {
+        if (data.length == 0) return;
+        if (data[pos] == '<') {
+            typeParameters();
+        }
+
+        if (pos < data.length && data[pos] == '(') {
+            // MethodSignature
+            pos++;
+            while (data[pos] != ')') {
+                javaType();
+            }
+            pos++;
+            // Result
+            javaType();
+            while (pos < data.length && data[pos] == '^') {
+                pos++;
+                referenceType();
+            }
+        } else {
+            // ClassSignature is a superclass followed by interfaces, a FieldSignature is a single type
+            while (pos < data.length) {
+                referenceType();
+            }
+        }
+    }
+
+    private void typeParameters() {
+        pos++;
+        while (data[pos] != '>') {
+            // Identifier, never a class name
+            while (data[pos] != ':') pos++;
+            pos++;
+
+            // ClassBound, can be empty if only interface bounds follow
+            var c = data[pos];
+            if (c == 'L' || c == '[' || c == 'T') {
+                referenceType();
+            }
+
+            // InterfaceBound
+            while (data[pos] == ':') {
+                pos++;
+                referenceType();
+            }
+        }
+        pos++;
+    }
+
+    // JavaTypeSignature, including V for method results
+    private void javaType() {
+        switch (data[pos]) {
+            case 'L', 'T', '[' -> referenceType();
+            default -> pos++;
+        }
+    }
+
+    private void referenceType() {
+        switch (data[pos]) {
+            case 'L' -> classType();
+            case 'T' -> {
+                // TypeVariableSignature, never a class name
+                while (data[pos] != ';') pos++;
+                pos++;
+            }
+            case '[' -> {
+                pos++;
+                javaType();
+            }
+            default -> throw new IllegalStateException("Malformed signature \"" + new String(data) + "\" at " + pos);
+        }
+    }
+
+    private void classType() {
+        pos++;
+
+        // The scratch names are used as stacks, type arguments push nested names above ours and pop them again
+        var originalBase = originalLength;
+        var remappedBase = remappedLength;
+
+        // PackageSpecifier and the outermost SimpleClassTypeSignature
+        var start = pos;
+        skipIdentifier();
+        appendOriginal(data, start, pos - start);
+        var remapped = mappings.remapClassOrNull(probe.set(originalName, originalBase, originalLength - originalBase));
+        if (remapped != null) {
+            replace(start, pos, remapped.getData(), 0, remapped.length());
+            appendRemapped(remapped.getData(), 0, remapped.length());
+        } else {
+            appendRemapped(data, start, pos - start);
+        }
+        typeArguments();
+
+        // ClassTypeSignatureSuffix, named by appending to the enclosing class
+        while (data[pos] == '.') {
+            pos++;
+            start = pos;
+            skipIdentifier();
+            appendOriginal(DOLLAR, 0, 1);
+            appendOriginal(data, start, pos - start);
+
+            var remappedInner = mappings.remapClassOrNull(probe.set(originalName, originalBase, originalLength - originalBase));
+            if (remappedInner != null) {
+                var inner = remappedInner.getData();
+                var outerLength = remappedLength - remappedBase;
+                // Prefer cutting off the remapped outer name, but fall back to the last $ if the inner class moved
+                int innerStart;
+                if (inner.length > outerLength && inner[outerLength] == '$' &&
+                        Arrays.equals(inner, 0, outerLength, remappedName, remappedBase, remappedLength)) {
+                    innerStart = outerLength + 1;
+                } else {
+                    innerStart = lastIndexOf(inner, (byte) '$') + 1;
+                }
+                replace(start, pos, inner, innerStart, inner.length - innerStart);
+                remappedLength = remappedBase;
+                appendRemapped(inner, 0, inner.length);
+            } else {
+                appendRemapped(DOLLAR, 0, 1);
+                appendRemapped(data, start, pos - start);
+            }
+            typeArguments();
+        }
+
+        // ;
+        pos++;
+        originalLength = originalBase;
+        remappedLength = remappedBase;
+    }
+
+    private void typeArguments() {
+        if (data[pos] != '<') return;
+        pos++;
+        while (data[pos] != '>') {
+            switch (data[pos]) {
+                case '*' -> pos++;
+                case '+', '-' -> {
+                    pos++;
+                    referenceType();
+                }
+                default -> referenceType();
+            }
+        }
+        pos++;
+    }
+
+    private void skipIdentifier() {
+        byte c;
+        while ((c = data[pos]) != '<' && c != '.' && c != ';') pos++;
+    }
+
+    // Swaps data[start, end) for the given bytes in the output, skipping the write if nothing would change
+    private void replace(int start, int end, byte[] bytes, int offset, int length) {
+        if (Arrays.equals(data, start, end, bytes, offset, offset + length)) return;
+        if (output == null) output = new Utf8Builder(data.length + 32);
+        output.append(data, copied, start - copied);
+        output.append(bytes, offset, length);
+        copied = end;
+    }
+
+    private void appendOriginal(byte[] bytes, int offset, int length) {
+        if (originalLength + length > originalName.length) {
+            originalName = Arrays.copyOf(originalName, Math.max(originalName.length * 2, originalLength + length));
+        }
+        System.arraycopy(bytes, offset, originalName, originalLength, length);
+        originalLength += length;
+    }
+
+    private void appendRemapped(byte[] bytes, int offset, int length) {
+        if (remappedLength + length > remappedName.length) {
+            remappedName = Arrays.copyOf(remappedName, Math.max(remappedName.length * 2, remappedLength + length));
+        }
+        System.arraycopy(bytes, offset, remappedName, remappedLength, length);
+        remappedLength += length;
+    }
+
+    private static int lastIndexOf(byte[] data, byte c) {
+        for (int i = data.length - 1; i >= 0; i--) {
+            if (data[i] == c) return i;
+        }
+        return -1;
+    }
+}
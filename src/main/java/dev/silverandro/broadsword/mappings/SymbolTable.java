@@ -0,0 +1,129 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.tools.UTF8Container;
+
+import java.util.Arrays;
+
+/**
+ * Interns every distinct name used by a {@link MappingsSet} exactly once and hands out a dense int ID for it. The
+ * mapping tables are keyed by these IDs, so repeated owners, names, and descriptors share a single
+ * {@link UTF8Container} and comparing keys is an int comparison.
+ * <p>
+ * Nothing is allocated until the first symbol is interned, so a mappings set that keeps its mappings elsewhere does not
+ * pay for an empty table.
+ * <p>
+ * Not thread safe for interning, but lookups are safe once the table is no longer modified.
+ */
+public final class SymbolTable {
+    // Pairs of (hash, id + 1), 0 marks an empty slot
+    private int[] slots;
+    private int shift;
+    private UTF8Container[] symbols;
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return The symbol with the given ID
+     */
+    public UTF8Container get(int id) {
+        return symbols[id];
+    }
+
+    /**
+     * Returns the ID of the symbol, adding it if required. A newly added symbol keeps the passed container instance.
+     */
+    public int intern(UTF8Container symbol) {
+        allocate();
+        var data = symbol.getData();
+        int hash = symbol.hashCode();
+        int slot = find(hash, data, 0, data.length);
+        if (slots[slot + 1] != 0) return slots[slot + 1] - 1;
+        return add(slot, hash, symbol);
+    }
+
+    /**
+     * Returns the ID of the symbol made of {@code data[offset, offset + length)}, copying the bytes only if the symbol
+     * has not been seen before.
+     */
+    public int intern(byte[] data, int offset, int length) {
+        allocate();
+        int hash = UTF8Container.hashOf(data, offset, length);
+        int slot = find(hash, data, offset, length);
+        if (slots[slot + 1] != 0) return slots[slot + 1] - 1;
+        return add(slot, hash, new UTF8Container(Arrays.copyOfRange(data, offset, offset + length)));
+    }
+
+    /**
+     * @return The ID of the symbol, or {@code -1} if it was never interned
+     */
+    public int find(UTF8Container symbol) {
+        if (size == 0) return -1;
+        var data = symbol.getData();
+        return slots[find(symbol.hashCode(), data, 0, data.length) + 1] - 1;
+    }
+
+    /**
+     * @return The ID of the symbol the probe points at, or {@code -1} if it was never interned
+     */
+    public int find(NameProbe probe) {
+        if (size == 0) return -1;
+        return slots[find(probe.hashCode(), probe.data, probe.offset, probe.length) + 1] - 1;
+    }
+
+    private void allocate() {
+        if (slots != null) return;
+        slots = new int[2 << 10];
+        shift = 32 - 10;
+        symbols = new UTF8Container[512];
+    }
+
+    // Returns the slot holding the symbol, or the empty slot it would go in
+    private int find(int hash, byte[] data, int offset, int length) {
+        int slot = FlatTable.index(hash, shift) << 1;
+        int entry;
+        while ((entry = slots[slot + 1]) != 0) {
+            if (slots[slot] == hash && symbols[entry - 1].contentEquals(data, offset, length)) {
+                return slot;
+            }
+            slot = (slot + 2) & (slots.length - 1);
+        }
+        return slot;
+    }
+
+    private int add(int slot, int hash, UTF8Container symbol) {
+        if (size == symbols.length) {
+            symbols = Arrays.copyOf(symbols, size * 2);
+        }
+        int id = size++;
+        symbols[id] = symbol;
+        slots[slot] = hash;
+        slots[slot + 1] = id + 1;
+
+        if (size * 2 > slots.length / 2) {
+            rehash();
+        }
+        return id;
+    }
+
+    private void rehash() {
+        var old = slots;
+        slots = new int[old.length * 2];
+        shift--;
+        for (int i = 0; i < old.length; i += 2) {
+            if (old[i + 1] == 0) continue;
+            int slot = FlatTable.index(old[i], shift) << 1;
+            while (slots[slot + 1] != 0) {
+                slot = (slot + 2) & (slots.length - 1);
+            }
+            slots[slot] = old[i];
+            slots[slot + 1] = old[i + 1];
+        }
+    }
+}
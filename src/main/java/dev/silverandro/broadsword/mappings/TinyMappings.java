@@ -4,58 +4,200 @@
 
 package dev.silverandro.broadsword.mappings;
 
-import dev.silverandro.broadsword.tools.UTF8Container;
-
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
 
+/**
+ * Tiny v1 mappings, remapping from the first namespace of the file to the second.
+ * <p>
+ * The file is memory mapped and split into line aligned chunks that are parsed in parallel, names never pass through
+ * {@link String}. Each chunk interns its names into its own batch, so the only work left for the calling thread is
+ * merging the distinct names of each chunk and copying the entries over as symbol IDs.
+ */
 public final class TinyMappings extends MappingsSet {
+    // Below this, starting up threads costs more than it saves
+    private static final int PARALLEL_THRESHOLD = 1 << 20;
+    // How much of a chunk is copied out of the mapping at a time
+    private static final int WINDOW = 1 << 16;
+
     public void parseMappingsFile(File file) {
-        new FileParser().loadMappingsFile(file);
-    }
-
-    private class FileParser {
-        public void loadMappingsFile(File file) {
-            try (var input = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
-                // Skip first metadata line
-                input.readLine();
-                String line = input.readLine();
-                while (line != null) {
-                    char firstChar = line.charAt(0);
-                    if (firstChar == 'C') {
-                        readClassLine(line);
-                    } else {
-                        readFieldOrMethodLine(line);
-                    }
-                    line = input.readLine();
+        try {
+            parseMappingsFile(file.toPath());
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public void parseMappingsFile(Path path) throws IOException {
+        try (var channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            parseMapped(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads mappings from a stream, such as a {@link java.util.zip.GZIPInputStream} or a
+     * {@link java.util.zip.ZipInputStream} positioned on the mappings entry of a jar. The stream is read ahead on a
+     * background thread, so decompression overlaps with parsing. It is not closed.
+     */
+    public void parseMappings(InputStream input) throws IOException {
+        try (var stream = new ReadAheadInputStream(input)) {
+            var buffer = new byte[1 << 20];
+            int length = 0;
+            boolean header = true;
+            int read;
+            while ((read = stream.read(buffer, length, buffer.length - length)) >= 0) {
+                length += read;
+                int lastLine = lastIndexOf(buffer, length, (byte) '\n');
+                if (lastLine < 0) {
+                    if (length == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    continue;
                 }
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+
+                int from = 0;
+                if (header) {
+                    // Skip first metadata line
+                    from = indexOf(buffer, 0, length, (byte) '\n') + 1;
+                    header = false;
+                }
+                // Parse every complete line, and keep the partial one for the next read
+                var batch = new MappingsBatch();
+                parseLines(buffer, from, lastLine + 1, batch);
+                batch.applyTo(this);
+                length -= lastLine + 1;
+                System.arraycopy(buffer, lastLine + 1, buffer, 0, length);
+            }
+
+            if (!header && length > 0) {
+                var batch = new MappingsBatch();
+                parseLines(buffer, 0, length, batch);
+                batch.applyTo(this);
+            }
+        }
+    }
+
+    public void parseMappings(ReadableByteChannel channel) throws IOException {
+        parseMappings(Channels.newInputStream(channel));
+    }
+
+    private void parseMapped(ByteBuffer buffer) {
+        int size = buffer.limit();
+        // Skip first metadata line
+        int start = Math.min(lineEnd(buffer, 0) + 1, size);
+
+        int chunks = size < PARALLEL_THRESHOLD ? 1 : Runtime.getRuntime().availableProcessors();
+        var bounds = new int[chunks + 1];
+        bounds[0] = start;
+        bounds[chunks] = size;
+        for (int i = 1; i < chunks; i++) {
+            // Move each split forward to the start of the next line
+            var split = start + (int) ((long) (size - start) * i / chunks);
+            bounds[i] = Math.max(bounds[i - 1], Math.min(lineEnd(buffer, split) + 1, size));
+        }
+
+        var batches = IntStream.range(0, chunks)
+                .parallel()
+                .mapToObj(i -> parseChunk(buffer, bounds[i], bounds[i + 1]))
+                .toList();
+        // Applied in file order, so duplicate entries resolve the same as reading the file front to back
+        for (var batch : batches) {
+            batch.applyTo(this);
+        }
+    }
+
+    private static MappingsBatch parseChunk(ByteBuffer buffer, int from, int to) {
+        var batch = new MappingsBatch();
+        // Copied out a few lines at a time into one small array, which stays in cache and is scanned far faster than
+        // the buffer would be
+        var window = new byte[Math.min(WINDOW, to - from)];
+        int position = from;
+        while (position < to) {
+            int length = Math.min(window.length, to - position);
+            buffer.get(position, window, 0, length);
+            int end = position + length == to ? length : lastIndexOf(window, length, (byte) '\n') + 1;
+            if (end == 0) {
+                // A single line longer than the window
+                window = new byte[window.length * 2];
+                continue;
             }
+            parseLines(window, 0, end, batch);
+            position += end;
         }
+        return batch;
+    }
 
-        private void readClassLine(String line) {
-            int startIndex = "CLASS\t".length();
-            int splitIndex = line.indexOf('\t', startIndex);
-            String original = line.substring(startIndex, splitIndex);
-            String after = line.substring(splitIndex + 1);
-            classMapping.put(new UTF8Container(original), new UTF8Container(after));
+    private static int lineEnd(ByteBuffer buffer, int from) {
+        int size = buffer.limit();
+        for (int i = from; i < size; i++) {
+            if (buffer.get(i) == '\n') return i;
         }
+        return size;
+    }
 
-        private void readFieldOrMethodLine(String line) {
-            String[] split = line.split("\t");
-            var ownerClass = split[1];
-            var desc = split[2];
-            var original = split[3];
-            var after = split[4];
-            if (split[0].charAt(0) == 'F') {
-                fieldMapping.put(OwnedType.of(ownerClass, original, desc), new UTF8Container(after));
+    /**
+     * Parses every complete line in {@code data[from, to)}, none of which may be the header.
+     */
+    static void parseLines(byte[] data, int from, int to, MappingsBatch batch) {
+        int line = from;
+        while (line < to) {
+            int end = indexOf(data, line, to, (byte) '\n');
+            int contentEnd = end > line && data[end - 1] == '\r' ? end - 1 : end;
+            parseLine(data, line, contentEnd, batch);
+            line = end + 1;
+        }
+    }
+
+    private static void parseLine(byte[] data, int start, int end, MappingsBatch batch) {
+        if (start == end) return;
+        var kind = data[start];
+        // The columns after the line type, each ending at the next tab
+        int first = indexOf(data, start, end, (byte) '\t') + 1;
+        int firstEnd = indexOf(data, first, end, (byte) '\t');
+        int second = firstEnd + 1;
+        int secondEnd = indexOf(data, second, end, (byte) '\t');
+        if (second > end) return;
+
+        if (kind == 'C') {
+            batch.addClass(batch.symbol(data, first, firstEnd), batch.symbol(data, second, secondEnd));
+        } else if (kind == 'F' || kind == 'M') {
+            int third = secondEnd + 1;
+            int thirdEnd = indexOf(data, third, end, (byte) '\t');
+            int fourth = thirdEnd + 1;
+            int fourthEnd = indexOf(data, fourth, end, (byte) '\t');
+            if (fourth > end) return;
+
+            var owner = batch.symbol(data, first, firstEnd);
+            var desc = batch.symbol(data, second, secondEnd);
+            var original = batch.symbol(data, third, thirdEnd);
+            var mapped = batch.symbol(data, fourth, fourthEnd);
+            if (kind == 'F') {
+                batch.addField(owner, original, desc, mapped);
             } else {
-                methodMapping.put(OwnedType.of(ownerClass, original, desc), new UTF8Container(after));
+                batch.addMethod(owner, original, desc, mapped);
             }
         }
     }
+
+    // Index of the separator, or end if there is none
+    private static int indexOf(byte[] data, int from, int end, byte separator) {
+        for (int i = from; i < end; i++) {
+            if (data[i] == separator) return i;
+        }
+        return end;
+    }
+
+    private static int lastIndexOf(byte[] data, int end, byte separator) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (data[i] == separator) return i;
+        }
+        return -1;
+    }
 }
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.tools.UTF8Container;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A Tiny v2 file with any number of namespaces, read in a single streaming pass. Every namespace is kept as its own
+ * column of names, so {@link #view(String, String)} can produce a {@link MappingsSet} between any two of them without
+ * reading the file again.
+ * <p>
+ * Parameters, local variables, and comments are skipped since they never appear in remapped class files.
+ * <a href="https://fabricmc.net/wiki/documentation:tiny2">See the format documentation</a>
+ */
+public final class TinyV2Mappings {
+    private final List<String> namespaces;
+    private final Columns classes;
+    private final Columns fields;
+    private final Columns methods;
+
+    private TinyV2Mappings(List<String> namespaces) {
+        this.namespaces = namespaces;
+        classes = new Columns(namespaces.size(), 1024);
+        fields = new Columns(namespaces.size(), 2048);
+        methods = new Columns(namespaces.size(), 2048);
+    }
+
+    public static TinyV2Mappings read(Path path) throws IOException {
+        try (var input = Files.newInputStream(path)) {
+            return read(input);
+        }
+    }
+
+    /**
+     * Reads a Tiny v2 file from the stream, which is not closed.
+     */
+    public static TinyV2Mappings read(InputStream input) throws IOException {
+        return new FileParser(new LineReader(input)).parse();
+    }
+
+    public List<String> namespaces() {
+        return namespaces;
+    }
+
+    /**
+     * Builds a mappings set from the {@code source} namespace to the {@code target} namespace. Member descriptors are
+     * translated into the source namespace. Only names that differ between the two namespaces are included, and a name
+     * left empty in the file is taken from the first namespace.
+     */
+    public CustomMappingsSet view(String source, String target) {
+        int from = namespaceIndex(source);
+        int to = namespaceIndex(target);
+        var set = new CustomMappingsSet();
+
+        // Descriptors are always written in the first namespace
+        CustomMappingsSet descriptors = null;
+        if (from != 0) {
+            descriptors = new CustomMappingsSet();
+            for (int i = 0; i < classes.size; i++) {
+                var first = classes.name(0, i);
+                var name = classes.name(from, i);
+                if (!first.equals(name)) descriptors.putClass(first, name);
+            }
+        }
+
+        for (int i = 0; i < classes.size; i++) {
+            var original = classes.name(from, i);
+            var mapped = classes.name(to, i);
+            if (!original.equals(mapped)) set.putClass(original, mapped);
+        }
+        for (int i = 0; i < fields.size; i++) {
+            var original = fields.name(from, i);
+            var mapped = fields.name(to, i);
+            if (original.equals(mapped)) continue;
+            var desc = descriptors == null ? fields.descs[i] : descriptors.translateDescriptor(fields.descs[i]);
+            set.putField(classes.name(from, fields.owners[i]), original, desc, mapped);
+        }
+        for (int i = 0; i < methods.size; i++) {
+            var original = methods.name(from, i);
+            var mapped = methods.name(to, i);
+            if (original.equals(mapped)) continue;
+            var desc = descriptors == null ? methods.descs[i] : descriptors.translateDescriptor(methods.descs[i]);
+            set.putMethod(classes.name(from, methods.owners[i]), original, desc, mapped);
+        }
+        return set;
+    }
+
+    private int namespaceIndex(String namespace) {
+        var index = namespaces.indexOf(namespace);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown namespace " + namespace + ", expected one of " + namespaces);
+        }
+        return index;
+    }
+
+    /**
+     * One array of names per namespace, plus the owner class and first namespace descriptor of members.
+     */
+    private static final class Columns {
+        private final UTF8Container[][] names;
+        private int[] owners;
+        private UTF8Container[] descs;
+        private int size;
+
+        Columns(int namespaces, int expectedSize) {
+            names = new UTF8Container[namespaces][expectedSize];
+            owners = new int[expectedSize];
+            descs = new UTF8Container[expectedSize];
+        }
+
+        // Returns the index of the new row, whose names still have to be filled in
+        int add(int owner, UTF8Container desc) {
+            if (size == owners.length) {
+                var capacity = size * 2;
+                for (int i = 0; i < names.length; i++) {
+                    names[i] = Arrays.copyOf(names[i], capacity);
+                }
+                owners = Arrays.copyOf(owners, capacity);
+                descs = Arrays.copyOf(descs, capacity);
+            }
+            owners[size] = owner;
+            descs[size] = desc;
+            return size++;
+        }
+
+        // A name left empty in the file is the same as the one in the first namespace
+        UTF8Container name(int namespace, int row) {
+            var name = names[namespace][row];
+            return name == null ? names[0][row] : name;
+        }
+    }
+
+    private static final class FileParser {
+        private final LineReader reader;
+        private TinyV2Mappings result;
+        private boolean escapedNames;
+        private int currentClass = -1;
+
+        // Bounds of the tab separated tokens of the current line, after its indentation
+        private int[] tokenStarts = new int[8];
+        private int[] tokenEnds = new int[8];
+        private int tokenCount;
+
+        FileParser(LineReader reader) {
+            this.reader = reader;
+        }
+
+        TinyV2Mappings parse() throws IOException {
+            if (!reader.next()) throw new IllegalStateException("Empty tiny file");
+            tokenize(reader.start);
+            if (tokenCount < 5 || !token(0).equals("tiny") || !token(1).equals("2")) {
+                throw new IllegalStateException("Not a tiny v2 file, header was " + token(0) + " " + token(1));
+            }
+            var namespaces = new String[tokenCount - 3];
+            for (int i = 3; i < tokenCount; i++) {
+                namespaces[i - 3] = token(i);
+            }
+            result = new TinyV2Mappings(List.of(namespaces));
+
+            while (reader.next()) {
+                var data = reader.buffer;
+                int depth = 0;
+                while (reader.start + depth < reader.end && data[reader.start + depth] == '\t') depth++;
+                if (reader.start + depth == reader.end) continue;
+                tokenize(reader.start + depth);
+
+                if (depth == 0) {
+                    if (isKind('c')) {
+                        currentClass = readNames(result.classes, -1, null, 1);
+                    } else {
+                        // An unknown section, nothing under it applies to us
+                        currentClass = -1;
+                    }
+                } else if (depth == 1) {
+                    if (currentClass < 0) {
+                        if (result.classes.size == 0 && token(0).equals("escaped-names")) escapedNames = true;
+                    } else if (isKind('f')) {
+                        readNames(result.fields, currentClass, container(1), 2);
+                    } else if (isKind('m')) {
+                        readNames(result.methods, currentClass, container(1), 2);
+                    }
+                }
+                // Anything deeper is parameters, variables, or comments
+            }
+            return result;
+        }
+
+        private int readNames(Columns columns, int owner, UTF8Container desc, int firstName) {
+            var row = columns.add(owner, desc);
+            var count = Math.min(columns.names.length, tokenCount - firstName);
+            for (int i = 0; i < count; i++) {
+                columns.names[i][row] = container(firstName + i);
+            }
+            if (columns.names[0][row] == null) {
+                throw new IllegalStateException("Missing name in the first namespace: " + line());
+            }
+            return row;
+        }
+
+        private boolean isKind(char kind) {
+            return tokenEnds[0] - tokenStarts[0] == 1 && reader.buffer[tokenStarts[0]] == kind;
+        }
+
+        private void tokenize(int from) {
+            var data = reader.buffer;
+            tokenCount = 0;
+            int start = from;
+            for (int i = from; i <= reader.end; i++) {
+                if (i == reader.end || data[i] == '\t') {
+                    if (tokenCount == tokenStarts.length) {
+                        tokenStarts = Arrays.copyOf(tokenStarts, tokenCount * 2);
+                        tokenEnds = Arrays.copyOf(tokenEnds, tokenCount * 2);
+                    }
+                    tokenStarts[tokenCount] = start;
+                    tokenEnds[tokenCount++] = i;
+                    start = i + 1;
+                }
+            }
+        }
+
+        // An empty token means there is no name in that namespace
+        private UTF8Container container(int token) {
+            int start = tokenStarts[token];
+            int end = tokenEnds[token];
+            if (start == end) return null;
+            if (escapedNames) {
+                for (int i = start; i < end; i++) {
+                    if (reader.buffer[i] == '\\') return unescape(start, end);
+                }
+            }
+            return new UTF8Container(Arrays.copyOfRange(reader.buffer, start, end));
+        }
+
+        private UTF8Container unescape(int start, int end) {
+            var data = reader.buffer;
+            var out = new byte[end - start];
+            int length = 0;
+            for (int i = start; i < end; i++) {
+                var c = data[i];
+                if (c == '\\' && i + 1 < end) {
+                    c = switch (data[++i]) {
+                        case 'n' -> '\n';
+                        case 'r' -> '\r';
+                        case 't' -> '\t';
+                        case '0' -> 0;
+                        default -> data[i];
+                    };
+                }
+                out[length++] = c;
+            }
+            return new UTF8Container(Arrays.copyOf(out, length));
+        }
+
+        private String token(int token) {
+            if (token >= tokenCount) return "";
+            return new String(reader.buffer, tokenStarts[token], tokenEnds[token] - tokenStarts[token], StandardCharsets.UTF_8);
+        }
+
+        private String line() {
+            return new String(reader.buffer, reader.start, reader.end - reader.start, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -6,69 +6,201 @@ package dev.silverandro.broadsword.mappings;
 
 import dev.silverandro.broadsword.tools.UTF8Container;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
 
+/**
+ * TSRG mappings, in either the original two column format or TSRG v2 with a {@code tsrg2} header naming any number of
+ * namespaces. Fields are never keyed by their descriptor, since neither format always has one.
+ * <p>
+ * Files are read in a single streaming pass on bytes. Only the columns of the chosen namespaces are ever copied out,
+ * parameters and {@code static} markers are skipped.
+ */
 public final class TsrgMappings extends MappingsSet {
+    private static final byte[] TSRG2 = "tsrg2".getBytes(StandardCharsets.UTF_8);
+
     @Override
     protected boolean supportsFieldTypes() {
         return false;
     }
 
+    /**
+     * Reads the file from its first namespace to its second.
+     */
     public void parseMappingsFile(File file) {
-        new FileParser().loadMappingsFile(file);
+        try {
+            parseMappingsFile(file.toPath(), null, null);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
-    private class FileParser {
-        String currentClass = null;
-
-        public void loadMappingsFile(File file) {
-            try (var input = new BufferedReader(new FileReader(file, StandardCharsets.UTF_8))) {
-                // Skip first metadata line
-                input.readLine();
-                String line = input.readLine();
-                while (line != null) {
-                    var clean = line.trim();
-                    var trimAmount = line.length() - clean.length();
-
-                    if (trimAmount == 0) {
-                        readClassLine(clean);
-                    } else if (trimAmount == 1) {
-                        readFieldOrMethodLine(clean);
-                    }
+    /**
+     * Reads the file from the {@code source} namespace to the {@code target} namespace. A {@code null} namespace picks
+     * the first or second namespace respectively, which is the only choice for the original format.
+     */
+    public void parseMappingsFile(Path path, String source, String target) throws IOException {
+        try (var input = Files.newInputStream(path)) {
+            parse(input, source, target);
+        }
+    }
 
-                    line = input.readLine();
-                }
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+    /**
+     * Reads mappings from a stream, such as a {@link java.util.zip.GZIPInputStream} or a
+     * {@link java.util.zip.ZipInputStream} positioned on the mappings entry of a jar. The stream is read ahead on a
+     * background thread, so decompression overlaps with parsing. It is not closed.
+     * @see #parseMappingsFile(Path, String, String)
+     */
+    public void parseMappings(InputStream input, String source, String target) throws IOException {
+        try (var stream = new ReadAheadInputStream(input)) {
+            parse(stream, source, target);
         }
+    }
 
-        private void readFieldOrMethodLine(String clean) {
-            var firstIndex = clean.indexOf(' ');
-            var secondIndex = clean.indexOf(' ', firstIndex + 1);
-
-            var firstEntry = clean.substring(0, firstIndex);
-            var secondEntry = clean.substring(firstIndex + 1, secondIndex);
-            if (secondEntry.charAt(0) == '(') {
-                // Method
-                var thirdIndex = clean.indexOf(' ', secondIndex + 1);
-                var thirdEntry = clean.substring(secondIndex + 1, thirdIndex);
-                methodMapping.put(OwnedType.of(currentClass, firstEntry, secondEntry), new UTF8Container(thirdEntry));
+    public void parseMappings(ReadableByteChannel channel, String source, String target) throws IOException {
+        parseMappings(Channels.newInputStream(channel), source, target);
+    }
+
+    private void parse(InputStream input, String source, String target) throws IOException {
+        new FileParser(new LineReader(input)).parse(source, target);
+    }
+
+    private final class FileParser {
+        private final LineReader reader;
+        private final MappingsBatch batch = new MappingsBatch();
+        // Member descriptors are always in the first namespace, this takes them to the source namespace if required
+        private CustomMappingsSet descriptors;
+        private int namespaces = 2;
+        private int from = 0;
+        private int to = 1;
+        private UTF8Container currentClass;
+
+        // Bounds of the space separated tokens of the current line, after its indentation
+        private int[] tokenStarts = new int[8];
+        private int[] tokenEnds = new int[8];
+        private int tokenCount;
+
+        FileParser(LineReader reader) {
+            this.reader = reader;
+        }
+
+        void parse(String source, String target) throws IOException {
+            if (!reader.next()) return;
+            tokenize(reader.start);
+            if (tokenCount > 0 && isToken(0, TSRG2)) {
+                namespaces = tokenCount - 1;
+                if (source != null) from = namespaceIndex(source);
+                if (target != null) to = namespaceIndex(target);
+                if (from != 0) descriptors = new CustomMappingsSet();
             } else {
-                // Field
-                methodMapping.put(OwnedType.of(currentClass, firstEntry, null), new UTF8Container(secondEntry));
+                // The original format has no header, the first line is already a mapping
+                readLine();
+            }
+
+            while (reader.next()) {
+                readLine();
+            }
+            batch.applyTo(TsrgMappings.this, descriptors);
+        }
+
+        private void readLine() {
+            var data = reader.buffer;
+            int depth = 0;
+            while (reader.start + depth < reader.end && data[reader.start + depth] == '\t') depth++;
+            if (reader.start + depth == reader.end) return;
+            tokenize(reader.start + depth);
+
+            if (depth == 0) {
+                readClassOrPackage();
+            } else if (depth == 1 && currentClass != null) {
+                readMember();
+            }
+            // Deeper lines are parameters and static markers
+        }
+
+        private void readClassOrPackage() {
+            if (tokenCount < namespaces) {
+                // Skipped along with its members, which would otherwise attach to the previous class
+                currentClass = null;
+                return;
+            }
+            var first = tokenEnds[0] - 1;
+            if (reader.buffer[first] == '/') {
+                // Packages end with a / in every namespace
+                var original = slice(from, 1);
+                var mapped = slice(to, 1);
+                if (!original.equals(mapped)) putPackage(original, mapped);
+                currentClass = null;
+                return;
+            }
+
+            currentClass = slice(from, 0);
+            var mapped = slice(to, 0);
+            if (!currentClass.equals(mapped)) batch.addClass(currentClass, mapped);
+            if (descriptors != null) {
+                descriptors.putClass(slice(0, 0), currentClass);
+            }
+        }
+
+        // Fields are names only or a first name and descriptor followed by the other names, methods always have one
+        private void readMember() {
+            boolean isMethod = tokenCount > 1 && reader.buffer[tokenStarts[1]] == '(';
+            boolean hasDesc = tokenCount == namespaces + 1;
+            if (!hasDesc && (isMethod || tokenCount != namespaces)) return;
+
+            var original = slice(memberToken(from, hasDesc), 0);
+            var mapped = slice(memberToken(to, hasDesc), 0);
+            if (isMethod) {
+                if (original.startsWith('<') || original.equals(mapped)) return;
+                batch.addMethod(currentClass, original, slice(1, 0), mapped);
+            } else if (!original.equals(mapped)) {
+                batch.addField(currentClass, original, null, mapped);
+            }
+        }
+
+        private int memberToken(int namespace, boolean hasDesc) {
+            return hasDesc && namespace > 0 ? namespace + 1 : namespace;
+        }
+
+        private int namespaceIndex(String namespace) {
+            var bytes = namespace.getBytes(StandardCharsets.UTF_8);
+            for (int i = 1; i < tokenCount; i++) {
+                if (isToken(i, bytes)) return i - 1;
+            }
+            throw new IllegalArgumentException("Unknown namespace " + namespace);
+        }
+
+        private boolean isToken(int token, byte[] value) {
+            return Arrays.equals(reader.buffer, tokenStarts[token], tokenEnds[token], value, 0, value.length);
+        }
+
+        private void tokenize(int from) {
+            var data = reader.buffer;
+            tokenCount = 0;
+            int start = from;
+            for (int i = from; i <= reader.end; i++) {
+                if (i == reader.end || data[i] == ' ') {
+                    if (tokenCount == tokenStarts.length) {
+                        tokenStarts = Arrays.copyOf(tokenStarts, tokenCount * 2);
+                        tokenEnds = Arrays.copyOf(tokenEnds, tokenCount * 2);
+                    }
+                    tokenStarts[tokenCount] = start;
+                    tokenEnds[tokenCount++] = i;
+                    start = i + 1;
+                }
             }
         }
 
-        private void readClassLine(String clean) {
-            var firstIndex = clean.indexOf(' ');
-            var secondIndex = clean.indexOf(' ', firstIndex + 1);
-            currentClass = clean.substring(0, firstIndex);
-            classMapping.put(new UTF8Container(currentClass), new UTF8Container(clean.substring(firstIndex + 1, secondIndex)));
+        // Copies out a token, leaving off the last trim bytes
+        private UTF8Container slice(int token, int trim) {
+            return new UTF8Container(Arrays.copyOfRange(reader.buffer, tokenStarts[token], tokenEnds[token] - trim));
         }
     }
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.tools.UTF8Container;
+
+import java.util.Arrays;
+
+/**
+ * A minimal growable byte array for building remapped names, without the synchronization and stream overhead of
+ * {@link java.io.ByteArrayOutputStream}.
+ */
+final class Utf8Builder {
+    private byte[] data;
+    private int length;
+
+    Utf8Builder(int capacity) {
+        data = new byte[capacity];
+    }
+
+    void append(byte b) {
+        ensure(1);
+        data[length++] = b;
+    }
+
+    void append(byte[] bytes, int offset, int count) {
+        ensure(count);
+        System.arraycopy(bytes, offset, data, length, count);
+        length += count;
+    }
+
+    void append(UTF8Container container) {
+        ensure(container.length());
+        container.copyTo(data, length);
+        length += container.length();
+    }
+
+    void reset() {
+        length = 0;
+    }
+
+    UTF8Container toContainer() {
+        return new UTF8Container(Arrays.copyOf(data, length));
+    }
+
+    private void ensure(int extra) {
+        if (length + extra > data.length) {
+            data = Arrays.copyOf(data, Math.max(data.length * 2, length + extra));
+        }
+    }
+}
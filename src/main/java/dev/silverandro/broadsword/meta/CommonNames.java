@@ -20,4 +20,22 @@ public final class CommonNames {
     public static final UTF8Container CODE = new UTF8Container("Code");
     public static final UTF8Container STACK_MAP_TABLE = new UTF8Container("StackMapTable");
     public static final UTF8Container BOOTSTRAP_METHODS = new UTF8Container("BootstrapMethods");
+    public static final UTF8Container CONSTANT_VALUE = new UTF8Container("ConstantValue");
+    public static final UTF8Container EXCEPTIONS = new UTF8Container("Exceptions");
+    public static final UTF8Container METHOD_PARAMETERS = new UTF8Container("MethodParameters");
+    public static final UTF8Container LOCAL_VARIABLE_TABLE = new UTF8Container("LocalVariableTable");
+    public static final UTF8Container LOCAL_VARIABLE_TYPE_TABLE = new UTF8Container("LocalVariableTypeTable");
+    public static final UTF8Container RECORD = new UTF8Container("Record");
+    public static final UTF8Container MODULE = new UTF8Container("Module");
+    public static final UTF8Container MODULE_PACKAGES = new UTF8Container("ModulePackages");
+    public static final UTF8Container MODULE_MAIN_CLASS = new UTF8Container("ModuleMainClass");
+    public static final UTF8Container ANNOTATION_DEFAULT = new UTF8Container("AnnotationDefault");
+    public static final UTF8Container RUNTIME_VISIBLE_ANNOTATIONS = new UTF8Container("RuntimeVisibleAnnotations");
+    public static final UTF8Container RUNTIME_INVISIBLE_ANNOTATIONS = new UTF8Container("RuntimeInvisibleAnnotations");
+    public static final UTF8Container RUNTIME_VISIBLE_PARAMETER_ANNOTATIONS = new UTF8Container("RuntimeVisibleParameterAnnotations");
+    public static final UTF8Container RUNTIME_INVISIBLE_PARAMETER_ANNOTATIONS = new UTF8Container("RuntimeInvisibleParameterAnnotations");
+    public static final UTF8Container RUNTIME_VISIBLE_TYPE_ANNOTATIONS = new UTF8Container("RuntimeVisibleTypeAnnotations");
+    public static final UTF8Container RUNTIME_INVISIBLE_TYPE_ANNOTATIONS = new UTF8Container("RuntimeInvisibleTypeAnnotations");
+
+    public static final UTF8Container LAMBDA_METAFACTORY = new UTF8Container("java/lang/invoke/LambdaMetafactory");
 }
@@ -4,6 +4,8 @@
 
 package dev.silverandro.broadsword.meta;
 
+import java.util.Arrays;
+
 /**
  * A class that allows for tracking all the necessary information for remapping a constant pool.
  * The actual data is abstracted over with some getters and setters, but its still pretty close to minimal. Shouldn't fail
@@ -14,13 +16,13 @@ package dev.silverandro.broadsword.meta;
  * helper methods
  */
 public final class ConstantPoolTracker {
-    private final byte[] indexToRemapType;
+    private byte[] indexToRemapType;
     // Works as both Name->NT and NT->OwnerClass
-    private final short[] ntData;
+    private short[] ntData;
     // Works as both Class->UTF8Content and Name->Desc
-    private final short[] contentMappings;
+    private short[] contentMappings;
     // Offsets into the constant pool
-    private final int[] offsets;
+    private int[] offsets;
 
     public ConstantPoolTracker(int size) {
         indexToRemapType = new byte[size];
@@ -29,6 +31,24 @@ public final class ConstantPoolTracker {
         offsets = new int[size];
     }
 
+    /**
+     * Empties the tracker for a constant pool of {@code size} entries, growing it if needed. Only the first {@code size}
+     * entries are cleared, so reusing a tracker is cheaper than making a new one.
+     */
+    public void reset(int size) {
+        if (size > offsets.length) {
+            var capacity = Math.max(size, offsets.length * 2);
+            indexToRemapType = new byte[capacity];
+            ntData = new short[capacity];
+            contentMappings = new short[capacity];
+            offsets = new int[capacity];
+        } else {
+            Arrays.fill(indexToRemapType, 0, size, (byte) 0);
+            Arrays.fill(ntData, 0, size, (short) 0);
+            Arrays.fill(contentMappings, 0, size, (short) 0);
+        }
+    }
+
     //
     // Put Operations
     //
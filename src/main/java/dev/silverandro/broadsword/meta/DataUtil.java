@@ -10,6 +10,7 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
 import java.util.Arrays;
 
 /**
@@ -65,6 +66,27 @@ public final class DataUtil {
         in.position(in.position() + count);
     }
 
+    /**
+     * Copies bytes from a ByteBuffer to another ByteBuffer, which must have room for them.
+     */
+    public static void copyBytes(int count, ByteBuffer in, ByteBuffer out) {
+        out.put(out.position(), in, in.position(), count);
+        out.position(out.position() + count);
+        in.position(in.position() + count);
+    }
+
+    /**
+     * Writes the content of a buffer, between its position and limit, to a stream in a single write.
+     */
+    public static void writeBuffer(ByteBuffer buffer, OutputStream out) throws IOException {
+        if (buffer.hasArray()) {
+            out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            buffer.position(buffer.limit());
+        } else {
+            Channels.newChannel(out).write(buffer);
+        }
+    }
+
     /**
      * Skips {@code count} bytes forward without reading.
      */
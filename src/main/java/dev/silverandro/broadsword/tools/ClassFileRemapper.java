@@ -5,31 +5,36 @@
 package dev.silverandro.broadsword.tools;
 
 import dev.silverandro.broadsword.data.ClassMappingStruct;
+import dev.silverandro.broadsword.lookups.ClassBufferConsumer;
 import dev.silverandro.broadsword.lookups.ClassMappingLookup;
 import dev.silverandro.broadsword.lookups.OutputStreamFactory;
 import dev.silverandro.broadsword.mappings.MappingsSet;
+import dev.silverandro.broadsword.mappings.MemberProbe;
 import dev.silverandro.broadsword.meta.CTags;
 import dev.silverandro.broadsword.meta.ConstantPoolTracker;
 import dev.silverandro.broadsword.meta.DataUtil;
 import dev.silverandro.broadsword.meta.RemapType;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.ArrayDeque;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 public class ClassFileRemapper {
+    private static final ClassMappingStruct EMPTY_STRUCT = new ClassMappingStruct(List.of(), Map.of());
+
     /**
      * Remaps the provided class file from the origin namespace to the target namespace. When required, {@code classInfoReq}
      * is invoked to request information about classes that are needed for remapping. This method assumes that the class
-     * file is valid.
+     * file is valid. A class that no mapping applies to is written out unchanged, see {@link RemapSession}.
      * <p>
      * <strong>
      *     Please note that classInfoReq does not cache or de-duplicate requests, the invoker is in charge of the
-     *     performance of invocations.
+     *     performance of invocations. Classes passed to {@link MappingsSet#propagateMethods} beforehand never
+     *     cause a request.
      * </strong>
      *
      * @param classFile The {@code byte[]} that makes up the class file to remap
@@ -38,6 +43,23 @@ public class ClassFileRemapper {
      * @param outputReq Factory for an output stream based on the name of this class
      */
     public static void remapClassBytes(byte[] classFile, MappingsSet mappingsSet, ClassMappingLookup classInfoReq, OutputStreamFactory outputReq) throws IOException {
+        remapClassBytes(classFile, mappingsSet, classInfoReq, OutputBufferPool.sharedHeap(), (className, buffer) -> {
+            try (var outputStream = outputReq.createOutputStream(className)) {
+                DataUtil.writeBuffer(buffer, outputStream);
+            }
+        });
+    }
+
+    /**
+     * Same as {@link #remapClassBytes(byte[], MappingsSet, ClassMappingLookup, OutputStreamFactory)}, but the class is
+     * written into a buffer taken from {@code bufferPool}, sized from the input class, and handed to {@code output}.
+     * Once the pool has warmed up, no output space is allocated.
+     */
+    public static void remapClassBytes(byte[] classFile, MappingsSet mappingsSet, ClassMappingLookup classInfoReq, OutputBufferPool bufferPool, ClassBufferConsumer output) throws IOException {
+        RemapSession.current().remapClassBytes(classFile, mappingsSet, classInfoReq, bufferPool, output);
+    }
+
+    static void remapClassBytes(RemapSession session, byte[] classFile, MappingsSet mappingsSet, ClassMappingLookup classInfoReq, OutputBufferPool bufferPool, ClassBufferConsumer output) throws IOException {
         var input = ByteBuffer.wrap(classFile);
 
         //  u4  magic;
@@ -54,20 +76,18 @@ public class ClassFileRemapper {
 
         // To be populated later, lets us remap field and method attr
         UTF8Container thisClass;
-        // Copy all UFT-8 data into memory to assist in remapping
-        var utf8Copy = new UTF8Container[count];
+        // Views of the UTF-8 entries, only made once something needs the content
+        var utf8Copy = session.utf8s(count);
         // Keep track of info
-        var tracker = new ConstantPoolTracker(count);
+        var tracker = session.tracker;
+        tracker.reset(count);
 
         // Read through all the constant pool entries
         while (index < count) {
             var tag = input.get();
+            tracker.putOffset(index, input.position());
             switch (tag) {
-                case CTags.UTF8 -> {
-                    var length = input.getShort();
-                    var content = DataUtil.readBytes(length, input);
-                    utf8Copy[index] = content;
-                }
+                case CTags.UTF8 -> DataUtil.skipBytes(input.getShort() & 0xFFFF, input);
 
                 case CTags.CLASS -> {
                     var contentIndex = input.getShort();
@@ -132,13 +152,17 @@ public class ClassFileRemapper {
 
         // Access flags, this, super, and interfaces
         input.getShort();
-        thisClass = utf8Copy[tracker.getClassContent(input.getShort())];
-        var superClass = utf8Copy[tracker.getClassContent(input.getShort())];
+        var thisClassIndex = tracker.getClassContent(input.getShort());
+        thisClass = utf8(utf8Copy, classFile, tracker, thisClassIndex);
+        // These are handed to the class lookup, which may keep them
+        var superIndex = tracker.getClassContent(input.getShort());
+        var superClass = superIndex == 0 ? null : utf8(utf8Copy, classFile, tracker, superIndex).compact();
         var interfacesCount = input.getShort();
         var interfaces = new UTF8Container[interfacesCount];
         while (interfacesCount-- > 0) {
-            interfaces[interfacesCount] = utf8Copy[tracker.getClassContent(input.getShort())];
+            interfaces[interfacesCount] = utf8(utf8Copy, classFile, tracker, tracker.getClassContent(input.getShort())).compact();
         }
+        var propagated = mappingsSet.isPropagated(thisClass);
 
         // Treat these basically as NT structures
         var fieldsCount = input.getShort();
@@ -168,116 +192,172 @@ public class ClassFileRemapper {
         // And we're done parsing! fly back to the start and rewrite it the way out
         input.reset();
 
-        // Write to a stream
-        var constantPool = new ByteArrayOutputStream();
+        // Names usually grow a little when remapped, the buffer is moved to a larger one if they grow more than this
+        var out = bufferPool.acquire(classFile.length + (classFile.length >> 3) + 64);
+        out.putLong(magic);
+        out.putShort(count);
+
+        // Reused for every lookup so that probing the mappings doesn't allocate
+        var classProbe = session.classProbe;
+        var memberProbe = session.memberProbe;
 
         // Run through the constant pool entries again, rewriting as we go
         index = 1;
         while (index < count) {
             var tag = input.get();
-            constantPool.write(tag);
+            // Nothing but UTF8 entries changes size
+            out = bufferPool.ensureRemaining(out, 9);
+            out.put(tag);
             switch (tag) {
                 case CTags.UTF8 -> {
-                    var original = utf8Copy[index];
-                    DataUtil.skipBytes(input.getShort(), input);
-                    UTF8Container newOutput = original;
+                    var length = input.getShort() & 0xFFFF;
+                    UTF8Container original = null;
+                    UTF8Container newOutput = null;
 
                     switch (tracker.getRemapType(index)) {
-                        case RemapType.CLASS -> newOutput = mappingsSet.remapClass(original);
+                        case RemapType.CLASS -> newOutput = mappingsSet.remapClassOrNull(classProbe.setUtf8(classFile, tracker.getOffset(index)));
 
-                        case RemapType.DESCRIPTOR -> newOutput = mappingsSet.remapDescriptor(original);
+                        case RemapType.DESCRIPTOR -> {
+                            original = utf8(utf8Copy, classFile, tracker, index);
+                            newOutput = mappingsSet.remapDescriptor(original);
+                        }
 
-                        case RemapType.MODULE -> newOutput = mappingsSet.remapModule(original);
+                        case RemapType.MODULE -> {
+                            original = utf8(utf8Copy, classFile, tracker, index);
+                            newOutput = mappingsSet.remapModuleOrNull(original);
+                        }
 
-                        case RemapType.PACKAGE -> newOutput = mappingsSet.remapPackage(original);
+                        case RemapType.PACKAGE -> {
+                            original = utf8(utf8Copy, classFile, tracker, index);
+                            newOutput = mappingsSet.remapPackageOrNull(original);
+                        }
 
                         case RemapType.NAME_NT -> {
                             var nameType = tracker.getRemapType(tracker.getNameNT(index));
-                            var owner = utf8Copy[tracker.getClassContent(tracker.getNameOwner(index))];
-                            var desc = utf8Copy[tracker.getDescIndex(index)];
-                            if (nameType == RemapType.METHOD_NT) {
-                                newOutput = mappingsSet.remapMethod(owner, original, desc);
-                            } else if (nameType == RemapType.FIELD_NT) {
-                                newOutput = mappingsSet.remapField(owner, original, desc);
+                            var ownerIndex = tracker.getClassContent(tracker.getNameOwner(index));
+                            // Dynamic call sites have no owner to look up against
+                            if (ownerIndex != 0) {
+                                pointMember(memberProbe, classFile, tracker, ownerIndex, index);
+                                if (nameType == RemapType.METHOD_NT) {
+                                    newOutput = mappingsSet.remapMethodOrNull(memberProbe);
+                                } else if (nameType == RemapType.FIELD_NT) {
+                                    newOutput = mappingsSet.remapFieldOrNull(memberProbe);
+                                    if (newOutput == null) {
+                                        newOutput = remapInheritedField(classInfoReq, mappingsSet, memberProbe, utf8(utf8Copy, classFile, tracker, ownerIndex));
+                                    }
+                                }
                             }
                         }
 
-                        case RemapType.SELF_FIELD_NAME ->
-                                newOutput = mappingsSet.remapField(thisClass, original, utf8Copy[tracker.getDescIndex(index)]);
+                        case RemapType.SELF_FIELD_NAME -> {
+                            pointMember(memberProbe, classFile, tracker, thisClassIndex, index);
+                            newOutput = mappingsSet.remapFieldOrNull(memberProbe);
+                        }
 
-                        case RemapType.SELF_METHOD_NAME -> newOutput = remapSelfMethod(
-                                classInfoReq, utf8Copy,
-                                tracker, index,
-                                mappingsSet, thisClass,
-                                original, superClass, interfaces
-                        );
+                        case RemapType.SELF_METHOD_NAME -> {
+                            pointMember(memberProbe, classFile, tracker, thisClassIndex, index);
+                            if (propagated) {
+                                // Inherited mappings were pushed down ahead of time, the direct lookup is all there is
+                                newOutput = mappingsSet.remapMethodOrNull(memberProbe);
+                            } else {
+                                original = utf8(utf8Copy, classFile, tracker, index);
+                                newOutput = remapSelfMethod(
+                                        classInfoReq, mappingsSet, memberProbe,
+                                        original, utf8(utf8Copy, classFile, tracker, tracker.getDescIndex(index)),
+                                        superClass, interfaces
+                                );
+                            }
+                        }
 
                         default -> {}
                     }
 
-                    if (newOutput == null) { newOutput = original; }
-                    var data = newOutput.getData();
-                    constantPool.write(data.length >> 8);
-                    constantPool.write((byte)data.length);
-                    constantPool.writeBytes(data);
+                    if (newOutput == null || newOutput == original) {
+                        // Unchanged, so the entry is copied straight from the input
+                        out = bufferPool.ensureRemaining(out, 2 + length);
+                        out.putShort((short) length);
+                        DataUtil.copyBytes(length, input, out);
+                    } else {
+                        DataUtil.skipBytes(length, input);
+                        out = bufferPool.ensureRemaining(out, 2 + newOutput.length());
+                        out.putShort((short) newOutput.length());
+                        out.put(newOutput.getData(), 0, newOutput.length());
+                    }
                 }
 
                 case CTags.CLASS, CTags.PACKAGE, CTags.MODULE, CTags.METHOD_TYPE, CTags.STRING ->
-                        DataUtil.copyBytes(2, input, constantPool);
+                        DataUtil.copyBytes(2, input, out);
 
                 case CTags.FIELD, CTags.METHOD, CTags.INTERFACE_METHOD,
                         CTags.NAME_AND_TYPE, CTags.DYNAMIC, CTags.INVOKE_DYNAMIC,
-                        CTags.INTEGER, CTags.FLOAT -> DataUtil.copyBytes(4, input, constantPool);
+                        CTags.INTEGER, CTags.FLOAT -> DataUtil.copyBytes(4, input, out);
 
                 case CTags.LONG, CTags.DOUBLE -> {
-                    DataUtil.copyBytes(8, input, constantPool);
+                    DataUtil.copyBytes(8, input, out);
                     index++;
                 }
 
-                case CTags.METHOD_HANDLE -> DataUtil.copyBytes(3, input, constantPool);
+                case CTags.METHOD_HANDLE -> DataUtil.copyBytes(3, input, out);
 
                 default -> throw new IllegalStateException("Got out of sync? Unexpected constant pool tag " + tag + " in rewrite phase.");
             }
             index++;
         }
 
-        var outputStream = new DataOutputStream(outputReq.createOutputStream(mappingsSet.remapClass(thisClass)));
-        outputStream.writeLong(magic);
-        outputStream.writeShort(count);
-        constantPool.writeTo(outputStream);
-        outputStream.write(input.array(), input.position(), input.remaining());
-        outputStream.close();
+        // The rest of the class is unchanged
+        out = bufferPool.ensureRemaining(out, input.remaining());
+        out.put(input);
+        try {
+            output.acceptClass(mappingsSet.remapClass(thisClass).compact(), out.flip());
+        } finally {
+            bufferPool.release(out);
+        }
+    }
+
+    // The UTF-8 entry at the index as a view into the class file, made the first time it is needed
+    private static UTF8Container utf8(UTF8Container[] utf8s, byte[] classFile, ConstantPoolTracker tracker, int index) {
+        var utf8 = utf8s[index];
+        if (utf8 == null) {
+            var offset = tracker.getOffset(index);
+            utf8 = UTF8Container.view(classFile, offset + 2, DataUtil.readShort(classFile, offset));
+            utf8s[index] = utf8;
+        }
+        return utf8;
+    }
+
+    // Points the probe at the owner class name and the name + descriptor of the given name index
+    private static void pointMember(MemberProbe probe, byte[] classFile, ConstantPoolTracker tracker, int ownerIndex, int nameIndex) {
+        probe.owner.setUtf8(classFile, tracker.getOffset(ownerIndex));
+        probe.name.setUtf8(classFile, tracker.getOffset(nameIndex));
+        probe.desc.setUtf8(classFile, tracker.getOffset(tracker.getDescIndex(nameIndex)));
     }
 
     // Repeatedly request the class inheritance until we manage to remap or run out of structs
-    private static UTF8Container remapSelfMethod(
+    static UTF8Container remapSelfMethod(
             ClassMappingLookup classInfoReq,
-            UTF8Container[] utf8Copy,
-            ConstantPoolTracker tracker,
-            int index,
             MappingsSet mappingsSet,
-            UTF8Container thisClass,
+            MemberProbe probe,
             UTF8Container original,
+            UTF8Container desc,
             UTF8Container superClass,
             UTF8Container[] interfaces
     ) {
         // no one will remap <init> or <clinit>, exit early
         if (original.startsWith('<')) { return original; }
 
-        // try just remapping straight
-        var desc = utf8Copy[tracker.getDescIndex(index)];
-        UTF8Container newOutput = mappingsSet.remapMethodOrNull(thisClass, original, desc);
+        // try just remapping straight, the probe already points at this class
+        UTF8Container newOutput = mappingsSet.remapMethodOrNull(probe);
         if (newOutput == null) {
             // Check if the super class contains it, and also prepare for if it doesn't
             ClassMappingStruct superStruct;
             if (superClass.startsWithJava()) {
-                superStruct = new ClassMappingStruct(List.of(), Map.of());
+                superStruct = EMPTY_STRUCT;
             } else {
-                superStruct = classInfoReq.lookupClassInfo(superClass);
+                superStruct = lookup(classInfoReq, superClass);
             }
             var methodDesc = superStruct.methodsAndDesc().get(original);
             if (desc.equals(methodDesc)) {
-                return mappingsSet.remapMethod(superClass, original, desc);
+                return remapInheritedMethod(mappingsSet, probe, superClass, original);
             } else {
                 // Advanced search!
                 // This could be arbitrarily deep in the inheritance tree, so build a queue of structs to try
@@ -289,10 +369,10 @@ public class ClassFileRemapper {
                     if (name.startsWithJava()) {
                         continue;
                     }
-                    var classStruct = classInfoReq.lookupClassInfo(name);
+                    var classStruct = lookup(classInfoReq, name);
                     methodDesc = classStruct.methodsAndDesc().get(original);
                     if (desc.equals(methodDesc)) {
-                        return mappingsSet.remapMethod(name, original, desc);
+                        return remapInheritedMethod(mappingsSet, probe, name, original);
                     } else {
                         searchQueue.addAll(classStruct.superAndInterfaceClasses());
                     }
@@ -302,6 +382,47 @@ public class ClassFileRemapper {
         return newOutput;
     }
 
+    /**
+     * Field references name the class they are made through, which may only inherit the field. If the lookup opts in
+     * with {@link ClassMappingLookup#lookupReferenceOwners()}, the parents of that class are searched in the order the
+     * JVM resolves fields in, interfaces before the super class, for the first one with a mapping for the field. Structs
+     * don't list fields, so a mapped field hidden by an unmapped one of the same name further down is not noticed.
+     */
+    static UTF8Container remapInheritedField(ClassMappingLookup classInfoReq, MappingsSet mappingsSet, MemberProbe probe, UTF8Container owner) {
+        if (!classInfoReq.lookupReferenceOwners() || owner.startsWith('[') || owner.startsWithJava()) return null;
+        var seen = new HashSet<UTF8Container>();
+        return remapInheritedField(classInfoReq, mappingsSet, probe, lookup(classInfoReq, owner.compact()), seen);
+    }
+
+    private static UTF8Container remapInheritedField(ClassMappingLookup classInfoReq, MappingsSet mappingsSet, MemberProbe probe, ClassMappingStruct struct, Set<UTF8Container> seen) {
+        var parents = struct.superAndInterfaceClasses();
+        // The super class comes first in the struct but is searched last
+        for (int i = 1; i <= parents.size(); i++) {
+            var parent = parents.get(i % parents.size());
+            if (parent.startsWithJava() || !seen.add(parent)) continue;
+            probe.owner.set(parent.getData(), 0, parent.length());
+            var newOutput = mappingsSet.remapFieldOrNull(probe);
+            if (newOutput == null) {
+                newOutput = remapInheritedField(classInfoReq, mappingsSet, probe, lookup(classInfoReq, parent), seen);
+            }
+            if (newOutput != null) return newOutput;
+        }
+        return null;
+    }
+
+    // A class the lookup knows nothing about is searched as if it had no methods and no parents
+    static ClassMappingStruct lookup(ClassMappingLookup classInfoReq, UTF8Container className) {
+        var struct = classInfoReq.lookupClassInfo(className);
+        return struct == null ? EMPTY_STRUCT : struct;
+    }
+
+    // Reuses the probe's name and descriptor, only swapping out the owner
+    private static UTF8Container remapInheritedMethod(MappingsSet mappingsSet, MemberProbe probe, UTF8Container owner, UTF8Container original) {
+        probe.owner.set(owner.getData(), 0, owner.length());
+        var newOutput = mappingsSet.remapMethodOrNull(probe);
+        return newOutput == null ? original : newOutput;
+    }
+
     private static void eatAttributes(int count, ByteBuffer input) {
         while (count-- > 0) {
             // name index
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.tools;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Reusable buffers for the remappers to write class files into. After a few classes every buffer in the pool is large
+ * enough for the classes going through it, and remapping no longer allocates any output space.
+ * <p>
+ * Safe to share between threads, the pool holds at most one buffer per thread that was remapping at the same time.
+ */
+public final class OutputBufferPool {
+    private static final OutputBufferPool SHARED_HEAP = new OutputBufferPool(false);
+
+    private final boolean direct;
+    private final ArrayDeque<ByteBuffer> free = new ArrayDeque<>();
+
+    /**
+     * @param direct If buffers are allocated outside the heap, which saves a copy when they are written to a channel
+     */
+    public OutputBufferPool(boolean direct) {
+        this.direct = direct;
+    }
+
+    /**
+     * The heap pool used when remapping to an {@link java.io.OutputStream}.
+     */
+    public static OutputBufferPool sharedHeap() {
+        return SHARED_HEAP;
+    }
+
+    /**
+     * Takes a cleared buffer with at least {@code capacity} bytes of room out of the pool, allocating one if none is
+     * large enough.
+     */
+    public ByteBuffer acquire(int capacity) {
+        ByteBuffer buffer;
+        synchronized (free) {
+            buffer = free.pollLast();
+        }
+        // A buffer that is too small is dropped, so the pool settles on sizes that fit
+        if (buffer == null || buffer.capacity() < capacity) {
+            int size = Integer.highestOneBit(Math.max(capacity - 1, 1023)) << 1;
+            buffer = direct ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+        }
+        return buffer.clear();
+    }
+
+    /**
+     * Returns a buffer to the pool, it must not be used afterwards.
+     */
+    public void release(ByteBuffer buffer) {
+        synchronized (free) {
+            free.addLast(buffer);
+        }
+    }
+
+    /**
+     * Makes sure there is room for {@code bytes} more bytes, moving what was written so far into a larger buffer if
+     * there isn't.
+     * @return The buffer to keep writing to, the given one has been released if this is a different one
+     */
+    public ByteBuffer ensureRemaining(ByteBuffer buffer, int bytes) {
+        if (buffer.remaining() >= bytes) return buffer;
+        var larger = acquire(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        larger.put(buffer.flip());
+        release(buffer);
+        return larger;
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.tools;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How many classes were remapped and how many were passed through unchanged, added to by every {@link RemapSession}
+ * that counts into it. Safe to share between threads, so one instance can total a whole job however many threads or
+ * nested sessions it uses.
+ * <p>
+ * Sessions count into {@link #global()} unless they are given their own, see {@link RemapSession#setCounts(RemapCounts)}.
+ */
+public final class RemapCounts {
+    private static final RemapCounts GLOBAL = new RemapCounts();
+
+    private final LongAdder remappedClasses = new LongAdder();
+    private final LongAdder passedThroughClasses = new LongAdder();
+
+    /**
+     * The counts of every session that wasn't given its own.
+     */
+    public static RemapCounts global() {
+        return GLOBAL;
+    }
+
+    void remapped() {
+        remappedClasses.increment();
+    }
+
+    void passedThrough() {
+        passedThroughClasses.increment();
+    }
+
+    /**
+     * @return How many classes were remapped, not counting ones that were passed through
+     */
+    public long remappedClasses() {
+        return remappedClasses.sum();
+    }
+
+    /**
+     * @return How many classes were handed to the output unchanged, because no mapping applied to them
+     */
+    public long passedThroughClasses() {
+        return passedThroughClasses.sum();
+    }
+
+    /**
+     * Sets both counts back to zero. Classes counted while this runs may or may not be kept.
+     */
+    public void reset() {
+        remappedClasses.reset();
+        passedThroughClasses.reset();
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.tools;
+
+import dev.silverandro.broadsword.lookups.ClassBufferConsumer;
+import dev.silverandro.broadsword.lookups.ClassMappingLookup;
+import dev.silverandro.broadsword.lookups.OutputStreamFactory;
+import dev.silverandro.broadsword.mappings.MappingsSet;
+import dev.silverandro.broadsword.mappings.MemberProbe;
+import dev.silverandro.broadsword.mappings.NameProbe;
+import dev.silverandro.broadsword.meta.CTags;
+import dev.silverandro.broadsword.meta.ConstantPoolTracker;
+import dev.silverandro.broadsword.meta.DataUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * The scratch space of the remappers, for remapping many classes one after another. The arrays and tables a remapper
+ * needs per class are kept here and grow to fit the largest class seen so far, so a worker thread that keeps a session
+ * doesn't allocate them again for every class. What is still allocated per class is mostly names: a view for each UTF8
+ * entry that is read, compacted copies of the names of the class and its parents, and the remapped names themselves.
+ * Once a class is done, everything pointing into it is dropped, so an idle session keeps no class alive.
+ * <p>
+ * Before a class is remapped, its constant pool is checked for anything the mappings could change: a mapped class,
+ * including inside a descriptor or signature, or the name of a mapped field or method. A class with none of them is
+ * handed to the output exactly as it was read, and counted by {@link RemapCounts#passedThroughClasses()}.
+ * <p>
+ * A session is not thread safe, each thread needs its own. The static methods of {@link ClassFileRemapper} and
+ * {@link TrueClassFileRemapper} use the session of the calling thread, see {@link #current()}.
+ */
+public final class RemapSession {
+    private static final ThreadLocal<RemapSession> CURRENT = ThreadLocal.withInitial(RemapSession::new);
+
+    // ClassFileRemapper
+    private UTF8Container[] utf8s = new UTF8Container[0];
+    private int utf8Count;
+    final ConstantPoolTracker tracker = new ConstantPoolTracker(0);
+    final NameProbe classProbe = new NameProbe();
+    final MemberProbe memberProbe = new MemberProbe();
+
+    // TrueClassFileRemapper, only made once it's used
+    private TrueClassFileRemapper.Rewriter rewriter;
+
+    // Pool offsets for the pass through check
+    private int[] offsets = new int[0];
+
+    private boolean remapping;
+    private RemapCounts counts;
+
+    /**
+     * A session that counts into {@link RemapCounts#global()}.
+     */
+    public RemapSession() {
+        this(RemapCounts.global());
+    }
+
+    public RemapSession(RemapCounts counts) {
+        this.counts = counts;
+    }
+
+    /**
+     * The session of the calling thread, kept for as long as the thread lives. If the thread is already remapping a
+     * class, such as from inside a {@link ClassMappingLookup}, a new session is returned instead, counting into the same
+     * {@link RemapCounts}.
+     */
+    public static RemapSession current() {
+        var session = CURRENT.get();
+        return session.remapping ? new RemapSession(session.counts) : session;
+    }
+
+    /**
+     * Remaps a class with {@link ClassFileRemapper}, see
+     * {@link ClassFileRemapper#remapClassBytes(byte[], MappingsSet, ClassMappingLookup, OutputStreamFactory)}.
+     */
+    public void remapClassBytes(byte[] classFile, MappingsSet mappingsSet, ClassMappingLookup classInfoReq, OutputStreamFactory outputReq) throws IOException {
+        remapClassBytes(classFile, mappingsSet, classInfoReq, OutputBufferPool.sharedHeap(), (className, buffer) -> {
+            try (var outputStream = outputReq.createOutputStream(className)) {
+                DataUtil.writeBuffer(buffer, outputStream);
+            }
+        });
+    }
+
+    /**
+     * Remaps a class with {@link ClassFileRemapper}, see
+     * {@link ClassFileRemapper#remapClassBytes(byte[], MappingsSet, ClassMappingLookup, OutputBufferPool, ClassBufferConsumer)}.
+     */
+    public void remapClassBytes(byte[] classFile, MappingsSet mappingsSet, ClassMappingLookup classInfoReq, OutputBufferPool bufferPool, ClassBufferConsumer output) throws IOException {
+        begin();
+        try {
+            if (passThrough(classFile, mappingsSet, output)) return;
+            ClassFileRemapper.remapClassBytes(this, classFile, mappingsSet, classInfoReq, bufferPool, output);
+            counts.remapped();
+        } finally {
+            remapping = false;
+            release();
+        }
+    }
+
+    /**
+     * Remaps a class with {@link TrueClassFileRemapper}, see
+     * {@link TrueClassFileRemapper#remapClassBytes(byte[], MappingsSet, ClassMappingLookup, OutputStreamFactory)}.
+     */
+    public void trueRemapClassBytes(byte[] classFile, MappingsSet mappingsSet, ClassMappingLookup classInfoReq, OutputStreamFactory outputReq) throws IOException {
+        trueRemapClassBytes(classFile, mappingsSet, classInfoReq, OutputBufferPool.sharedHeap(), (className, buffer) -> {
+            try (var outputStream = outputReq.createOutputStream(className)) {
+                DataUtil.writeBuffer(buffer, outputStream);
+            }
+        });
+    }
+
+    /**
+     * Remaps a class with {@link TrueClassFileRemapper}, see
+     * {@link TrueClassFileRemapper#remapClassBytes(byte[], MappingsSet, ClassMappingLookup, OutputBufferPool, ClassBufferConsumer)}.
+     */
+    public void trueRemapClassBytes(byte[] classFile, MappingsSet mappingsSet, ClassMappingLookup classInfoReq, OutputBufferPool bufferPool, ClassBufferConsumer output) throws IOException {
+        begin();
+        try {
+            if (passThrough(classFile, mappingsSet, output)) return;
+            if (rewriter == null) rewriter = new TrueClassFileRemapper.Rewriter();
+            TrueClassFileRemapper.remapClassBytes(rewriter, classFile, mappingsSet, classInfoReq, bufferPool, output);
+            counts.remapped();
+        } finally {
+            remapping = false;
+            release();
+        }
+    }
+
+    /**
+     * @return The counts this session adds the classes it remaps to
+     */
+    public RemapCounts counts() {
+        return counts;
+    }
+
+    /**
+     * Counts the classes this session remaps from now on into {@code counts}, such as one made for a single job. Setting
+     * it on {@link #current()} of each worker thread totals the job across all of them.
+     */
+    public void setCounts(RemapCounts counts) {
+        this.counts = counts;
+    }
+
+    private void begin() {
+        if (remapping) throw new IllegalStateException("This session is already remapping a class");
+        remapping = true;
+    }
+
+    // Hands the class to the output as it is if the pool has nothing the mappings could change
+    private boolean passThrough(byte[] classFile, MappingsSet mappingsSet, ClassBufferConsumer output) throws IOException {
+        int count = DataUtil.readShort(classFile, 8);
+        if (count > offsets.length) offsets = new int[Math.max(count, offsets.length * 2)];
+
+        int p = 10;
+        int index = 1;
+        while (index < count) {
+            var tag = classFile[p++];
+            offsets[index] = p;
+            switch (tag) {
+                case CTags.UTF8 -> {
+                    if (mayRemap(classFile, p, mappingsSet)) return false;
+                    p += 2 + DataUtil.readShort(classFile, p);
+                }
+
+                case CTags.CLASS, CTags.STRING, CTags.METHOD_TYPE -> p += 2;
+
+                case CTags.FIELD, CTags.METHOD, CTags.INTERFACE_METHOD, CTags.NAME_AND_TYPE,
+                        CTags.DYNAMIC, CTags.INVOKE_DYNAMIC, CTags.INTEGER, CTags.FLOAT -> p += 4;
+
+                case CTags.LONG, CTags.DOUBLE -> {
+                    p += 8;
+                    index++;
+                }
+
+                case CTags.METHOD_HANDLE -> p += 3;
+
+                // Only module descriptors have these, which are rare enough to always remap
+                case CTags.MODULE, CTags.PACKAGE -> {
+                    return false;
+                }
+
+                default -> throw new IllegalStateException("Unknown class file constant pool tag " + tag);
+            }
+            index++;
+        }
+
+        // Access flags, then this class
+        var nameOffset = offsets[DataUtil.readShort(classFile, offsets[DataUtil.readShort(classFile, p + 2)])];
+        var className = UTF8Container.view(classFile, nameOffset + 2, DataUtil.readShort(classFile, nameOffset)).compact();
+        output.acceptClass(className, ByteBuffer.wrap(classFile));
+        counts.passedThrough();
+        return true;
+    }
+
+    // If the UTF8 entry names a mapped class or member, or has a mapped class inside a descriptor or signature
+    private boolean mayRemap(byte[] classFile, int entryOffset, MappingsSet mappingsSet) {
+        classProbe.setUtf8(classFile, entryOffset);
+        if (mappingsSet.remapClassOrNull(classProbe) != null || mappingsSet.mapsMemberNamed(classProbe)) return true;
+
+        int end = entryOffset + 2 + DataUtil.readShort(classFile, entryOffset);
+        for (int i = entryOffset + 2; i < end; i++) {
+            // Inner classes of a parameterized class are named by suffix (LOuter<TT;>.Inner;), just remap them
+            if (classFile[i] == '>' && i + 1 < end && classFile[i + 1] == '.') return true;
+            if (classFile[i] != 'L') continue;
+            int nameEnd = i + 1;
+            while (nameEnd < end && classFile[nameEnd] != ';' && classFile[nameEnd] != '<') nameEnd++;
+            // Nothing after this can end a class name either
+            if (nameEnd == end) break;
+            if (mappingsSet.remapClassOrNull(classProbe.set(classFile, i + 1, nameEnd - i - 1)) != null) return true;
+        }
+        return false;
+    }
+
+    // Called after every class, however it ended, the rewriter releases its own state
+    private void release() {
+        Arrays.fill(utf8s, 0, utf8Count, null);
+        utf8Count = 0;
+        classProbe.clear();
+        memberProbe.clear();
+    }
+
+    // Space for the UTF8 entries of a constant pool, with nothing left over from the last class
+    UTF8Container[] utf8s(int count) {
+        Arrays.fill(utf8s, 0, utf8Count, null);
+        if (count > utf8s.length) utf8s = new UTF8Container[Math.max(count, utf8s.length * 2)];
+        utf8Count = count;
+        return utf8s;
+    }
+}
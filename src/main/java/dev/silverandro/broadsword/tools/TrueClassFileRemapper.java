@@ -4,493 +4,1254 @@
 
 package dev.silverandro.broadsword.tools;
 
+import dev.silverandro.broadsword.lookups.ClassBufferConsumer;
 import dev.silverandro.broadsword.lookups.ClassMappingLookup;
 import dev.silverandro.broadsword.lookups.OutputStreamFactory;
 import dev.silverandro.broadsword.mappings.MappingsSet;
+import dev.silverandro.broadsword.mappings.MemberProbe;
+import dev.silverandro.broadsword.mappings.NameProbe;
 import dev.silverandro.broadsword.meta.CTags;
 import dev.silverandro.broadsword.meta.CommonNames;
-import dev.silverandro.broadsword.meta.ConstantPoolTracker;
 import dev.silverandro.broadsword.meta.DataUtil;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
-
+import java.util.Map;
+
+/**
+ * Remaps class files by writing a fresh constant pool, built as the class is walked, instead of patching the original
+ * pool in place like {@link ClassFileRemapper}. Every constant is created in the context it is used in, so a name shared
+ * by unrelated entries can be remapped differently for each of them, and entries that become identical after remapping
+ * are merged. Unused entries of the original pool are dropped.
+ * <p>
+ * Like {@link ClassFileRemapper}, methods this class declares that have no mapping of their own are looked up through
+ * its parents using {@code classInfoReq}. If the lookup opts in with {@link ClassMappingLookup#lookupReferenceOwners()},
+ * field and method references made through another class that have no mapping of their own are also looked up through
+ * the hierarchy of that class, which is requested first and may be a library class. Classes passed to
+ * {@link MappingsSet#propagateMethods} are never requested for methods, only methods are propagated.
+ * <p>
+ * Every reference to the pool is rewritten, including instructions, stack map frames, bootstrap method arguments,
+ * annotations, records, and modules. Rewriting never changes the size of anything outside the pool, so the class body
+ * is copied once and patched in place. Attributes this doesn't know about are copied unchanged, with only their name
+ * rewritten, the same way the JVM ignores them.
+ * <p>
+ * A class that no mapping applies to is written out as it was, with its pool untouched, see {@link RemapSession}.
+ */
 public final class TrueClassFileRemapper {
+    private TrueClassFileRemapper() {}
+
+    // Kinds of attributes that reference the constant pool
+    private static final int SIGNATURE = 1;
+    private static final int CONSTANT_VALUE = 2;
+    private static final int CODE = 3;
+    private static final int EXCEPTIONS = 4;
+    private static final int SOURCE_FILE = 5;
+    private static final int INNER_CLASSES = 6;
+    private static final int ENCLOSING_METHOD = 7;
+    private static final int CLASS_LIST = 8;
+    private static final int NEST_HOST = 9;
+    private static final int BOOTSTRAP_METHODS = 10;
+    private static final int METHOD_PARAMETERS = 11;
+    private static final int LOCAL_VARIABLE_TABLE = 12;
+    private static final int LOCAL_VARIABLE_TYPE_TABLE = 13;
+    private static final int STACK_MAP_TABLE = 14;
+    private static final int RECORD = 15;
+    private static final int MODULE = 16;
+    private static final int MODULE_PACKAGES = 17;
+    private static final int MODULE_MAIN_CLASS = 18;
+    private static final int ANNOTATIONS = 19;
+    private static final int PARAMETER_ANNOTATIONS = 20;
+    private static final int TYPE_ANNOTATIONS = 21;
+    private static final int ANNOTATION_DEFAULT = 22;
+
+    private static final Map<UTF8Container, Integer> ATTRIBUTES = new HashMap<>();
+
+    static {
+        ATTRIBUTES.put(CommonNames.SIGNATURE, SIGNATURE);
+        ATTRIBUTES.put(CommonNames.CONSTANT_VALUE, CONSTANT_VALUE);
+        ATTRIBUTES.put(CommonNames.CODE, CODE);
+        ATTRIBUTES.put(CommonNames.EXCEPTIONS, EXCEPTIONS);
+        ATTRIBUTES.put(CommonNames.SOURCE_FILE, SOURCE_FILE);
+        ATTRIBUTES.put(CommonNames.INNER_CLASSES, INNER_CLASSES);
+        ATTRIBUTES.put(CommonNames.ENCLOSING_METHOD, ENCLOSING_METHOD);
+        ATTRIBUTES.put(CommonNames.NEST_MEMBERS, CLASS_LIST);
+        ATTRIBUTES.put(CommonNames.PERMITTED_SUBCLASSES, CLASS_LIST);
+        ATTRIBUTES.put(CommonNames.NEST_HOST, NEST_HOST);
+        ATTRIBUTES.put(CommonNames.BOOTSTRAP_METHODS, BOOTSTRAP_METHODS);
+        ATTRIBUTES.put(CommonNames.METHOD_PARAMETERS, METHOD_PARAMETERS);
+        ATTRIBUTES.put(CommonNames.LOCAL_VARIABLE_TABLE, LOCAL_VARIABLE_TABLE);
+        ATTRIBUTES.put(CommonNames.LOCAL_VARIABLE_TYPE_TABLE, LOCAL_VARIABLE_TYPE_TABLE);
+        ATTRIBUTES.put(CommonNames.STACK_MAP_TABLE, STACK_MAP_TABLE);
+        ATTRIBUTES.put(CommonNames.RECORD, RECORD);
+        ATTRIBUTES.put(CommonNames.MODULE, MODULE);
+        ATTRIBUTES.put(CommonNames.MODULE_PACKAGES, MODULE_PACKAGES);
+        ATTRIBUTES.put(CommonNames.MODULE_MAIN_CLASS, MODULE_MAIN_CLASS);
+        ATTRIBUTES.put(CommonNames.RUNTIME_VISIBLE_ANNOTATIONS, ANNOTATIONS);
+        ATTRIBUTES.put(CommonNames.RUNTIME_INVISIBLE_ANNOTATIONS, ANNOTATIONS);
+        ATTRIBUTES.put(CommonNames.RUNTIME_VISIBLE_PARAMETER_ANNOTATIONS, PARAMETER_ANNOTATIONS);
+        ATTRIBUTES.put(CommonNames.RUNTIME_INVISIBLE_PARAMETER_ANNOTATIONS, PARAMETER_ANNOTATIONS);
+        ATTRIBUTES.put(CommonNames.RUNTIME_VISIBLE_TYPE_ANNOTATIONS, TYPE_ANNOTATIONS);
+        ATTRIBUTES.put(CommonNames.RUNTIME_INVISIBLE_TYPE_ANNOTATIONS, TYPE_ANNOTATIONS);
+        ATTRIBUTES.put(CommonNames.ANNOTATION_DEFAULT, ANNOTATION_DEFAULT);
+    }
+
+    /**
+     * Remaps the provided class file from the origin namespace to the target namespace, see
+     * {@link ClassFileRemapper#remapClassBytes} for the meaning of each parameter. This method assumes that the class
+     * file is valid. The output stream is closed once the class has been written.
+     * <p>
+     * {@code classInfoReq} is requested for the parents of this class the same way as by {@link ClassFileRemapper}. If
+     * {@link ClassMappingLookup#lookupReferenceOwners()} is {@code true}, it is also requested for the class of each
+     * field and method reference that has no mapping of its own, then that class's parents, which relies on the super
+     * class coming first in {@link dev.silverandro.broadsword.data.ClassMappingStruct#superAndInterfaceClasses()}. These
+     * requests are not cached either.
+     */
     public static void remapClassBytes(byte[] classFile, MappingsSet mappingsSet, ClassMappingLookup classInfoReq, OutputStreamFactory outputReq) throws IOException {
-        var input = ByteBuffer.wrap(classFile);
-
-        // 2 concurrent output streams that we'll stitch together after
-        var backingConstantPoolOS = new ByteArrayOutputStream();
-        var backingClassBodyOS = new ByteArrayOutputStream();
-        var constantPoolOS = new DataOutputStream(backingConstantPoolOS);
-        var classBodyOS = new DataOutputStream(backingClassBodyOS);
-
-        //  u4  magic;
-        //  u2  minor_version;
-        //  u2  major_version;
-        var magic = input.getLong();
-
-        //  u2  constant_pool_count;
-        var count = input.getShort();
-        var index = 1;
-
-        // To be populated later, lets us remap field and method attr
-        UTF8Container thisClass;
-        UTF8Container superClass;
-
-        // Copy all UFT-8 data into memory to assist in remapping
-        var utf8Copy = new UTF8Container[count];
-        var tracker = new ConstantPoolTracker(count);
-
-        // Read through all the constant pool entries
-        while (index < count) {
-            var tag = input.get();
-            tracker.putOffset(index, input.position());
-            switch (tag) {
-                case CTags.UTF8 -> {
-                    var length = input.getShort();
-                    UTF8Container container = DataUtil.readBytes(length, input);
-                    utf8Copy[index] = container;
+        remapClassBytes(classFile, mappingsSet, classInfoReq, OutputBufferPool.sharedHeap(), (className, buffer) -> {
+            try (var outputStream = outputReq.createOutputStream(className)) {
+                DataUtil.writeBuffer(buffer, outputStream);
+            }
+        });
+    }
+
+    /**
+     * Same as {@link #remapClassBytes(byte[], MappingsSet, ClassMappingLookup, OutputStreamFactory)}, but the class is
+     * written into a buffer taken from {@code bufferPool}, sized from the input class, and handed to {@code output}.
+     */
+    public static void remapClassBytes(byte[] classFile, MappingsSet mappingsSet, ClassMappingLookup classInfoReq, OutputBufferPool bufferPool, ClassBufferConsumer output) throws IOException {
+        RemapSession.current().trueRemapClassBytes(classFile, mappingsSet, classInfoReq, bufferPool, output);
+    }
+
+    static void remapClassBytes(Rewriter rewriter, byte[] classFile, MappingsSet mappingsSet, ClassMappingLookup classInfoReq, OutputBufferPool bufferPool, ClassBufferConsumer output) throws IOException {
+        try {
+            rewriter.reset(classFile, mappingsSet, classInfoReq, bufferPool);
+            rewriter.rewrite();
+            output.acceptClass(rewriter.newThis, rewriter.finish().flip());
+        } finally {
+            rewriter.release();
+        }
+    }
+
+    /**
+     * The state of rewriting one class. Kept by a {@link RemapSession} and {@link #reset} for each class, so its arrays
+     * and pool only grow until they fit the largest class the session has seen. Everything that points into the class
+     * is dropped again by {@link #release}, so an idle session keeps no class alive.
+     */
+    static final class Rewriter {
+        private byte[] in;
+        private MappingsSet mappingsSet;
+        private ClassMappingLookup classInfoReq;
+        private final ConstantPoolBuilder pool = new ConstantPoolBuilder();
+
+        // The original pool, where offsets point just past the tag of each entry
+        private int count;
+        private byte[] tags = new byte[0];
+        private int[] offsets = new int[0];
+        private UTF8Container[] utf8s = new UTF8Container[0];
+        // Indices in the new pool of original entries that always copy the same way, 0 if not copied yet
+        private int[] copied = new int[0];
+
+        // The class body, everything after the constant pool, is copied once into the output after the new pool and
+        // then patched. Pairs of (position in the input, new value), a position of ~p patches a single byte at p.
+        private int[] patches = new int[0];
+        private int patchCount;
+        private int bodyLength;
+        private int bodyStart;
+        private int[] bootstrapOffsets;
+
+        private int thisClassName;
+        private UTF8Container thisClass;
+        private UTF8Container newThis;
+        private UTF8Container superClass;
+        private UTF8Container[] interfaces;
+        private boolean propagated;
+
+        // Reused for every lookup so that probing the mappings doesn't allocate
+        private final NameProbe nameProbe = new NameProbe();
+        private final MemberProbe memberProbe = new MemberProbe();
+
+        void reset(byte[] classFile, MappingsSet mappingsSet, ClassMappingLookup classInfoReq, OutputBufferPool bufferPool) {
+            this.in = classFile;
+            this.mappingsSet = mappingsSet;
+            this.classInfoReq = classInfoReq;
+            int count = u2(8);
+            if (count > tags.length) {
+                var size = Math.max(count, tags.length * 2);
+                tags = new byte[size];
+                offsets = new int[size];
+                utf8s = new UTF8Container[size];
+                copied = new int[size];
+            }
+            this.count = count;
+            patchCount = 0;
+            pool.begin(bufferPool, classFile);
+        }
+
+        // Called after every class, however it ended. Only what the class used has to be cleared.
+        void release() {
+            pool.release();
+            Arrays.fill(utf8s, 0, count, null);
+            Arrays.fill(copied, 0, count, 0);
+            count = 0;
+            in = null;
+            mappingsSet = null;
+            classInfoReq = null;
+            bootstrapOffsets = null;
+            thisClass = null;
+            newThis = null;
+            superClass = null;
+            interfaces = null;
+            nameProbe.clear();
+            memberProbe.clear();
+        }
+
+        void rewrite() throws IOException {
+            readConstantPool();
+            int ldcTargets = scanBody();
+            reserveLdcTargets(ldcTargets);
+
+            int p = bodyStart;
+            // Access flags
+            p += 2;
+
+            var thisIndex = u2(p);
+            thisClassName = u2(offsets[thisIndex]);
+            thisClass = utf8(thisClassName);
+            p = patch(p);
+            newThis = remapClassName(thisClassName).compact();
+
+            var superIndex = u2(p);
+            // Names handed to the class lookup may be kept by it, so they can't be views
+            superClass = superIndex == 0 ? null : utf8(u2(offsets[superIndex])).compact();
+            p = patchOptional(p);
+
+            int interfacesCount = u2(p);
+            p += 2;
+            interfaces = new UTF8Container[interfacesCount];
+            for (int i = 0; i < interfacesCount; i++) {
+                interfaces[i] = utf8(u2(offsets[u2(p)])).compact();
+                p = patch(p);
+            }
+            propagated = mappingsSet.isPropagated(thisClass);
+
+            int fieldsCount = u2(p);
+            p += 2;
+            while (fieldsCount-- > 0) {
+                p = member(p, true);
+            }
+
+            int methodsCount = u2(p);
+            p += 2;
+            while (methodsCount-- > 0) {
+                p = member(p, false);
+            }
+
+            attributes(p);
+
+            if (pool.nextIndex > 0xFFFF) {
+                throw new IllegalStateException("Remapped constant pool of " + thisClass + " has too many entries");
+            }
+        }
+
+        private void readConstantPool() {
+            int p = 10;
+            int index = 1;
+            while (index < count) {
+                var tag = in[p++];
+                tags[index] = tag;
+                offsets[index] = p;
+                switch (tag) {
+                    case CTags.UTF8 -> p += 2 + u2(p);
+
+                    case CTags.CLASS, CTags.STRING, CTags.METHOD_TYPE, CTags.MODULE, CTags.PACKAGE -> p += 2;
+
+                    case CTags.FIELD, CTags.METHOD, CTags.INTERFACE_METHOD, CTags.NAME_AND_TYPE,
+                            CTags.DYNAMIC, CTags.INVOKE_DYNAMIC, CTags.INTEGER, CTags.FLOAT -> p += 4;
+
+                    case CTags.LONG, CTags.DOUBLE -> {
+                        p += 8;
+                        index++;
+                    }
+
+                    case CTags.METHOD_HANDLE -> p += 3;
+
+                    default -> throw new IllegalStateException("Unknown class file constant pool tag " + tag);
                 }
+                index++;
+            }
+            bodyStart = p;
+            bodyLength = in.length - p;
+        }
 
-                case CTags.CLASS -> {
-                    var contentIndex = input.getShort();
-                    tracker.putClass(index, contentIndex);
+        // Finds the bootstrap methods and marks every constant loaded by a one byte ldc, returning how many there are
+        private int scanBody() {
+            int p = bodyStart + 6;
+            p += 2 + 2 * u2(p);
+
+            for (int members = 0; members < 2; members++) {
+                int memberCount = u2(p);
+                p += 2;
+                while (memberCount-- > 0) {
+                    p += 6;
+                    int attributeCount = u2(p);
+                    p += 2;
+                    while (attributeCount-- > 0) {
+                        int length = DataUtil.readInt(in, p + 2);
+                        if (attributeKind(u2(p)) == CODE) {
+                            markLdcTargets(p + 14, DataUtil.readInt(in, p + 10));
+                        }
+                        p += 6 + length;
+                    }
                 }
+            }
 
-                case CTags.FIELD -> {
-                    var classIndex = input.getShort();
-                    var ntIndex = input.getShort();
-                    tracker.putFieldNT(ntIndex);
-                    tracker.putNtClass(ntIndex, classIndex);
+            int attributeCount = u2(p);
+            p += 2;
+            while (attributeCount-- > 0) {
+                int length = DataUtil.readInt(in, p + 2);
+                if (attributeKind(u2(p)) == BOOTSTRAP_METHODS) {
+                    int q = p + 6;
+                    bootstrapOffsets = new int[u2(q)];
+                    q += 2;
+                    for (int i = 0; i < bootstrapOffsets.length; i++) {
+                        bootstrapOffsets[i] = q;
+                        q += 4 + 2 * u2(q + 2);
+                    }
                 }
+                p += 6 + length;
+            }
+
+            int targets = 0;
+            for (int i = 1; i < count; i++) {
+                if (copied[i] == -1) targets++;
+            }
+            return targets;
+        }
+
+        private void markLdcTargets(int codeStart, int codeLength) {
+            int pc = codeStart;
+            int end = codeStart + codeLength;
+            while (pc < end) {
+                if ((in[pc] & 0xFF) == LDC) copied[in[pc + 1] & 0xFF] = -1;
+                pc += instructionLength(in, codeStart, pc);
+            }
+        }
 
-                case CTags.METHOD, CTags.INTERFACE_METHOD -> {
-                    var classIndex = input.getShort();
-                    var ntIndex = input.getShort();
-                    tracker.putMethodNT(ntIndex);
-                    tracker.putNtClass(ntIndex, classIndex);
+        // A one byte ldc can only reach the first 255 entries, so its constants are placed first. Their own entries
+        // are filled in afterwards, since the pool may refer forwards.
+        private void reserveLdcTargets(int targets) throws IOException {
+            if (targets == 0) return;
+            var reserved = new int[targets * 2];
+            int reservedLength = 0;
+            for (int i = 1; i < count; i++) {
+                if (copied[i] != -1) continue;
+                var tag = tags[i];
+                if (tag == CTags.INTEGER || tag == CTags.FLOAT) {
+                    copied[i] = pool.int32(tag, DataUtil.readInt(in, offsets[i]));
+                } else {
+                    reserved[reservedLength++] = i;
+                    reserved[reservedLength++] = pool.reserve(tag);
+                    copied[i] = pool.nextIndex - 1;
                 }
+            }
+            for (int i = 0; i < reservedLength; i += 2) {
+                var original = reserved[i];
+                var operands = loadableOperands(original);
+                pool.fill(reserved[i + 1], copied[original], tags[original], operands >>> 16, operands & 0xFFFF);
+            }
+        }
+
+        private int member(int p, boolean field) throws IOException {
+            int nameIndex = u2(p + 2);
+            int descIndex = u2(p + 4);
+            var name = utf8(nameIndex);
+            var desc = utf8(descIndex);
+
+            memberProbe.owner.setUtf8(in, offsets[thisClassName]);
+            memberProbe.name.setUtf8(in, offsets[nameIndex]);
+            memberProbe.desc.setUtf8(in, offsets[descIndex]);
+            UTF8Container newName;
+            if (field) {
+                newName = mappingsSet.remapFieldOrNull(memberProbe);
+            } else if (propagated || superClass == null) {
+                // Inherited mappings were pushed down ahead of time, the direct lookup is all there is
+                newName = mappingsSet.remapMethodOrNull(memberProbe);
+            } else {
+                newName = ClassFileRemapper.remapSelfMethod(classInfoReq, mappingsSet, memberProbe, name, desc, superClass, interfaces);
+            }
+            if (newName == null) newName = name;
+
+            set(p + 2, pool.utf8(newName));
+            set(p + 4, pool.utf8(mappingsSet.remapDescriptor(desc)));
+            return attributes(p + 6);
+        }
+
+        private int attributes(int p) throws IOException {
+            int attributeCount = u2(p);
+            p += 2;
+            while (attributeCount-- > 0) {
+                int kind = attributeKind(u2(p));
+                p = patch(p);
+                int length = DataUtil.readInt(in, p);
+                p += 4;
+                attribute(kind, p);
+                p += length;
+            }
+            return p;
+        }
+
+        private void attribute(int kind, int p) throws IOException {
+            switch (kind) {
+                case SIGNATURE -> set(p, pool.utf8(mappingsSet.remapSignature(utf8(u2(p)))));
+
+                case CONSTANT_VALUE, NEST_HOST, MODULE_MAIN_CLASS -> patch(p);
 
-                case CTags.DYNAMIC, CTags.INVOKE_DYNAMIC -> {
-                    input.getShort(); // index into attribute
-                    var ntIndex = input.getShort();
-                    tracker.putMethodNT(ntIndex);
+                case CODE -> code(p);
+
+                case EXCEPTIONS, CLASS_LIST, MODULE_PACKAGES -> patchList(p);
+
+                case SOURCE_FILE -> {
+                    var sourceClass = newThis.toString();
+                    var start = sourceClass.lastIndexOf('/');
+                    var end = sourceClass.indexOf('$', start + 1);
+                    if (end == -1) end = sourceClass.length();
+                    set(p, pool.utf8(new UTF8Container(sourceClass.substring(start + 1, end) + ".java")));
                 }
 
-                case CTags.NAME_AND_TYPE -> {
-                    var nameIndex = input.getShort();
-                    var descIndex = input.getShort();
-                    tracker.putNtName(index, nameIndex);
-                    tracker.putNameToDesc(nameIndex, descIndex);
+                case INNER_CLASSES -> innerClasses(p);
+
+                case ENCLOSING_METHOD -> {
+                    var owner = utf8(u2(offsets[u2(p)]));
+                    patch(p);
+                    int nameAndType = u2(p + 2);
+                    if (nameAndType != 0) {
+                        var name = utf8(u2(offsets[nameAndType]));
+                        var desc = utf8(u2(offsets[nameAndType] + 2));
+                        set(p + 2, pool.nameAndType(mappingsSet.remapMethod(owner, name, desc), mappingsSet.remapDescriptor(desc)));
+                    }
                 }
 
-                case CTags.STRING -> input.getShort();
+                case BOOTSTRAP_METHODS -> {
+                    int methodCount = u2(p);
+                    p += 2;
+                    while (methodCount-- > 0) {
+                        p = patch(p);
+                        p = patchList(p);
+                    }
+                }
 
-                case CTags.INTEGER, CTags.FLOAT -> input.getInt();
+                case METHOD_PARAMETERS -> {
+                    int parameterCount = in[p++] & 0xFF;
+                    while (parameterCount-- > 0) {
+                        patchOptional(p);
+                        p += 4;
+                    }
+                }
 
-                case CTags.LONG, CTags.DOUBLE -> {
-                    input.getLong();
-                    index++;
+                case LOCAL_VARIABLE_TABLE, LOCAL_VARIABLE_TYPE_TABLE -> {
+                    int variableCount = u2(p);
+                    p += 2;
+                    while (variableCount-- > 0) {
+                        patch(p + 4);
+                        var type = utf8(u2(p + 6));
+                        var newType = kind == LOCAL_VARIABLE_TABLE ? mappingsSet.remapDescriptor(type) : mappingsSet.remapSignature(type);
+                        set(p + 6, pool.utf8(newType));
+                        p += 10;
+                    }
                 }
 
-                case CTags.METHOD_HANDLE -> {
-                    var kind = input.get();
-                    var refIndex = input.getShort();
-                    switch (kind) {
-                        case 1, 2, 3, 4 -> tracker.putFieldNT(refIndex);
-                        case 5, 6, 7, 8, 9 -> tracker.putMethodNT(refIndex);
+                case STACK_MAP_TABLE -> stackMapTable(p);
+
+                case RECORD -> {
+                    int componentCount = u2(p);
+                    p += 2;
+                    while (componentCount-- > 0) {
+                        int nameIndex = u2(p);
+                        int descIndex = u2(p + 2);
+                        // Components are backed by fields of the same name
+                        var desc = utf8(descIndex);
+                        var newName = mappingsSet.remapField(thisClass, utf8(nameIndex), desc);
+                        set(p, pool.utf8(newName));
+                        set(p + 2, pool.utf8(mappingsSet.remapDescriptor(desc)));
+                        p = attributes(p + 4);
                     }
                 }
 
-                case CTags.METHOD_TYPE -> tracker.putDescriptor(input.getShort());
+                case MODULE -> module(p);
 
-                case CTags.MODULE -> tracker.putModule(input.getShort());
+                case ANNOTATIONS -> annotations(p);
+
+                case PARAMETER_ANNOTATIONS -> {
+                    int parameterCount = in[p++] & 0xFF;
+                    while (parameterCount-- > 0) {
+                        p = annotations(p);
+                    }
+                }
+
+                case TYPE_ANNOTATIONS -> {
+                    int annotationCount = u2(p);
+                    p += 2;
+                    while (annotationCount-- > 0) {
+                        p = typeAnnotation(p);
+                    }
+                }
 
-                case CTags.PACKAGE -> tracker.putPackage(input.getShort());
+                case ANNOTATION_DEFAULT -> elementValue(p);
 
-                default -> throw new IllegalStateException("Unknown class file constant pool tag " + tag);
+                default -> {}
             }
-            index++;
         }
 
+        private void code(int p) throws IOException {
+            int codeLength = DataUtil.readInt(in, p + 4);
+            int codeStart = p + 8;
+            int end = codeStart + codeLength;
+            int pc = codeStart;
+            while (pc < end) {
+                int opcode = in[pc] & 0xFF;
+                switch (opcode) {
+                    case LDC -> addPatch(~(pc + 1), copied[in[pc + 1] & 0xFF]);
+
+                    case LDC_W, LDC2_W, GETSTATIC, PUTSTATIC, GETFIELD, PUTFIELD, INVOKEVIRTUAL, INVOKESPECIAL,
+                            INVOKESTATIC, INVOKEINTERFACE, INVOKEDYNAMIC, NEW, ANEWARRAY, CHECKCAST, INSTANCEOF,
+                            MULTIANEWARRAY -> patch(pc + 1);
+
+                    default -> {}
+                }
+                pc += instructionLength(in, codeStart, pc);
+            }
 
-        // Access flags
-        classBodyOS.writeShort(input.getShort());
+            p = end;
+            int exceptionCount = u2(p);
+            p += 2;
+            while (exceptionCount-- > 0) {
+                patchOptional(p + 6);
+                p += 8;
+            }
+            attributes(p);
+        }
 
-        // this
-        thisClass = utf8Copy[tracker.getClassContent(input.getShort())];
-        var newThisClass = mappingsSet.remapClass(thisClass);
-        var cpb = new ConstantPoolBuilder(newThisClass, constantPoolOS);
-        classBodyOS.writeShort(cpb.insertClass(newThisClass));
+        private void innerClasses(int p) throws IOException {
+            int classCount = u2(p);
+            p += 2;
+            while (classCount-- > 0) {
+                int inner = u2(offsets[u2(p)]);
+                patch(p);
+                int outerIndex = u2(p + 2);
+                patchOptional(p + 2);
+
+                int innerNameIndex = u2(p + 4);
+                if (innerNameIndex != 0) {
+                    var newInner = remapClassOrNull(inner);
+                    UTF8Container innerName;
+                    if (newInner == null) {
+                        innerName = utf8(innerNameIndex);
+                    } else {
+                        innerName = simpleName(newInner, outerIndex == 0 ? null : remapClassName(u2(offsets[outerIndex])));
+                    }
+                    set(p + 4, pool.utf8(innerName));
+                }
+                p += 8;
+            }
+        }
 
-        superClass = utf8Copy[tracker.getClassContent(input.getShort())];
-        var newSuperClass = mappingsSet.remapClass(superClass);
-        classBodyOS.writeShort(cpb.insertClass(newSuperClass));
+        // The part of a remapped nested class name after its outer class, or after its last $ if it moved
+        private static UTF8Container simpleName(UTF8Container inner, UTF8Container outer) {
+            var data = inner.getData();
+            int start;
+            if (outer != null && data.length > outer.length() + 1 && data[outer.length()] == '$'
+                    && Arrays.equals(data, 0, outer.length(), outer.getData(), 0, outer.length())) {
+                start = outer.length() + 1;
+            } else {
+                start = data.length - 1;
+                while (start >= 0 && data[start] != '$' && data[start] != '/') start--;
+                start++;
+            }
+            return new UTF8Container(Arrays.copyOfRange(data, start, data.length));
+        }
 
-        var interfacesCount = input.getShort();
-        classBodyOS.writeShort(interfacesCount);
-        while (interfacesCount-- > 0) {
-            UTF8Container interfaceName = utf8Copy[tracker.getClassContent(input.getShort())];
-            var newInterfaceName = mappingsSet.remapClass(interfaceName);
-            classBodyOS.writeShort(cpb.insertClass(newInterfaceName));
+        private void stackMapTable(int p) throws IOException {
+            int frameCount = u2(p);
+            p += 2;
+            while (frameCount-- > 0) {
+                int frameType = in[p++] & 0xFF;
+                if (frameType < 64) continue;
+                if (frameType < 128) {
+                    p = verificationType(p);
+                } else if (frameType == 247) {
+                    p = verificationType(p + 2);
+                } else if (frameType < 252) {
+                    // chop and same_frame_extended
+                    p += 2;
+                } else if (frameType < 255) {
+                    p += 2;
+                    for (int i = 0; i < frameType - 251; i++) {
+                        p = verificationType(p);
+                    }
+                } else {
+                    p += 2;
+                    for (int lists = 0; lists < 2; lists++) {
+                        int typeCount = u2(p);
+                        p += 2;
+                        while (typeCount-- > 0) {
+                            p = verificationType(p);
+                        }
+                    }
+                }
+            }
         }
 
-        // Treat these basically as NT structures
-        var fieldsCount = input.getShort();
-        classBodyOS.writeShort(fieldsCount);
-        while (fieldsCount-- > 0) {
-            // access flags
-            classBodyOS.writeShort(input.getShort());
+        private int verificationType(int p) throws IOException {
+            int tag = in[p++];
+            // Object holds a class, Uninitialized an instruction offset, everything else nothing
+            if (tag == 7) {
+                return patch(p);
+            }
+            return tag == 8 ? p + 2 : p;
+        }
 
-            var nameIndex = input.getShort();
-            var descIndex = input.getShort();
+        private void module(int p) throws IOException {
+            // module_name, flags, version
+            patch(p);
+            patchOptional(p + 4);
+            p += 6;
+
+            int requiresCount = u2(p);
+            p += 2;
+            while (requiresCount-- > 0) {
+                patch(p);
+                patchOptional(p + 4);
+                p += 6;
+            }
 
-            var originalName = utf8Copy[nameIndex];
-            var originalDesc = utf8Copy[descIndex];
+            // exports then opens
+            for (int lists = 0; lists < 2; lists++) {
+                int entryCount = u2(p);
+                p += 2;
+                while (entryCount-- > 0) {
+                    patch(p);
+                    p = patchList(p + 4);
+                }
+            }
 
-            var newName = mappingsSet.remapField(thisClass, originalName, originalDesc);
-            var newDesc = mappingsSet.remapDescriptor(originalDesc);
+            p = patchList(p);
 
-            classBodyOS.writeShort(cpb.insertUTF8(newName));
-            classBodyOS.writeShort(cpb.insertUTF8(newDesc));
+            int providesCount = u2(p);
+            p += 2;
+            while (providesCount-- > 0) {
+                p = patchList(patch(p));
+            }
+        }
 
-            var attrCount = input.getShort();
-            classBodyOS.writeShort(attrCount);
-            handleFieldAttribute(attrCount, input, tracker, utf8Copy, mappingsSet, cpb, classBodyOS);
+        private int annotations(int p) throws IOException {
+            int annotationCount = u2(p);
+            p += 2;
+            while (annotationCount-- > 0) {
+                p = annotation(p);
+            }
+            return p;
         }
 
-        var methodsCount = input.getShort();
-        classBodyOS.writeShort(methodsCount);
-        while (methodsCount-- > 0) {
-            // access flags
-            classBodyOS.writeShort(input.getShort());
+        private int annotation(int p) throws IOException {
+            set(p, pool.utf8(mappingsSet.remapDescriptor(utf8(u2(p)))));
+            int pairCount = u2(p + 2);
+            p += 4;
+            while (pairCount-- > 0) {
+                p = elementValue(patch(p));
+            }
+            return p;
+        }
 
-            var nameIndex = input.getShort();
-            var descIndex = input.getShort();
+        private int elementValue(int p) throws IOException {
+            int tag = in[p++];
+            switch (tag) {
+                case 'B', 'C', 'D', 'F', 'I', 'J', 'S', 'Z', 's' -> p = patch(p);
+
+                case 'e' -> {
+                    var type = utf8(u2(p));
+                    var constant = utf8(u2(p + 2));
+                    // Enum constants are fields of the enum class
+                    var owner = new UTF8Container(Arrays.copyOfRange(type.getData(), 1, type.length() - 1));
+                    set(p, pool.utf8(mappingsSet.remapDescriptor(type)));
+                    set(p + 2, pool.utf8(mappingsSet.remapField(owner, constant, type)));
+                    p += 4;
+                }
 
-            var originalName = utf8Copy[nameIndex];
-            var originalDesc = utf8Copy[descIndex];
+                case 'c' -> {
+                    set(p, pool.utf8(mappingsSet.remapDescriptor(utf8(u2(p)))));
+                    p += 2;
+                }
 
-            var newName = mappingsSet.remapMethod(thisClass, originalName, originalDesc);
-            var newDesc = mappingsSet.remapDescriptor(originalDesc);
+                case '@' -> p = annotation(p);
 
-            classBodyOS.writeShort(cpb.insertUTF8(newName));
-            classBodyOS.writeShort(cpb.insertUTF8(newDesc));
+                case '[' -> {
+                    int valueCount = u2(p);
+                    p += 2;
+                    while (valueCount-- > 0) {
+                        p = elementValue(p);
+                    }
+                }
 
-            var attrCount = input.getShort();
-            classBodyOS.writeShort(attrCount);
-            handleMethodAttribute(attrCount, input, tracker, utf8Copy, mappingsSet, cpb, classBodyOS);
+                default -> throw new IllegalStateException("Unknown annotation element tag " + (char) tag);
+            }
+            return p;
         }
 
-        var attributesCount = input.getShort();
-        classBodyOS.writeShort(attributesCount);
-        handleClassAttribute(attributesCount, input, tracker, utf8Copy, mappingsSet, cpb, classBodyOS);
-
-        var outputStream = new DataOutputStream(outputReq.createOutputStream(mappingsSet.remapClass(thisClass)));
-        outputStream.writeLong(magic);
-        outputStream.writeShort(cpb.nextIndex);
-        backingConstantPoolOS.writeTo(outputStream);
-        backingClassBodyOS.writeTo(outputStream);
-    }
-
-    private static void handleFieldAttribute(
-            short attrCount,
-            ByteBuffer input,
-            ConstantPoolTracker tracker,
-            UTF8Container[] utf8Copy,
-            MappingsSet mappingsSet,
-            ConstantPoolBuilder cpb,
-            DataOutputStream classBodyOS
-    ) throws IOException {
-        while (attrCount-- > 0) {
-            var nameIndex = input.getShort();
-            var name = utf8Copy[nameIndex];
-            cpb.insertUTF8(name);
-
-            var length = input.getInt();
-            if (name.equals(CommonNames.SIGNATURE)) {
-                classBodyOS.writeInt(2);
-                var signature = utf8Copy[input.getShort()];
-                var newSignature = mappingsSet.remapFieldSignature(signature);
-                var newSignatureIndex = cpb.insertUTF8(newSignature);
-                classBodyOS.writeShort(newSignatureIndex);
-            } else {
-                classBodyOS.writeInt(length);
-                DataUtil.copyBytes(length, input, classBodyOS);
+        private int typeAnnotation(int p) throws IOException {
+            int targetType = in[p++] & 0xFF;
+            switch (targetType) {
+                case 0x00, 0x01, 0x16 -> p += 1;
+                case 0x10, 0x11, 0x12, 0x17, 0x42, 0x43, 0x44, 0x45, 0x46 -> p += 2;
+                case 0x13, 0x14, 0x15 -> {}
+                case 0x40, 0x41 -> p += 2 + 6 * u2(p);
+                case 0x47, 0x48, 0x49, 0x4A, 0x4B -> p += 3;
+                default -> throw new IllegalStateException("Unknown type annotation target " + targetType);
             }
+            // type_path
+            p += 1 + 2 * (in[p] & 0xFF);
+            return annotation(p);
         }
-    }
 
-    private static void handleMethodAttribute(
-            short attrCount,
-            ByteBuffer input,
-            ConstantPoolTracker tracker,
-            UTF8Container[] utf8Copy,
-            MappingsSet mappingsSet,
-            ConstantPoolBuilder cpb,
-            DataOutputStream classBodyOS
-    ) throws IOException {
-        while (attrCount-- > 0) {
-            var nameIndex = input.getShort();
-            var name = utf8Copy[nameIndex];
-            cpb.insertUTF8(name);
-
-            var length = input.getInt();
-            if (name.equals(CommonNames.SIGNATURE)) {
-                classBodyOS.writeInt(2);
-                var signature = utf8Copy[input.getShort()];
-                var newSignature = mappingsSet.remapFieldSignature(signature);
-                var newSignatureIndex = cpb.insertUTF8(newSignature);
-                classBodyOS.writeShort(newSignatureIndex);
-            } else if (name.equals(CommonNames.CODE)) {
-                classBodyOS.writeInt(length);
-                handleCode(input, tracker, utf8Copy, mappingsSet, cpb, classBodyOS);
-            } else {
-                classBodyOS.writeInt(length);
-                DataUtil.copyBytes(length, input, classBodyOS);
-            }
+        // Rewrites the u2 index at p to the copy of the entry it points to, returning the position after it
+        private int patch(int p) throws IOException {
+            set(p, copy(u2(p)));
+            return p + 2;
         }
-    }
 
-    private static void handleCode(
-            ByteBuffer input,
-            ConstantPoolTracker tracker,
-            UTF8Container[] utf8Copy,
-            MappingsSet mappingsSet,
-            ConstantPoolBuilder cpb,
-            DataOutputStream classBodyOS
-    ) throws IOException {
-        classBodyOS.writeInt(input.getInt());
-
-        var codeLength = input.getInt();
-        classBodyOS.writeInt(codeLength);
-
-        var exceptionTableLength = input.getShort();
-        classBodyOS.writeShort(exceptionTableLength);
-        while (exceptionTableLength-- > 0) {
-            classBodyOS.writeInt(input.getInt());
-            classBodyOS.writeShort(input.getShort());
-            var catchType = input.getShort();
-            if (catchType != 0) {
-                classBodyOS.writeShort(cpb.insertClass(mappingsSet.remapClass(utf8Copy[tracker.getClassContent(catchType)])));
-            } else {
-                classBodyOS.writeShort(0);
+        // Same as patch, but leaves 0 (no entry) alone
+        private int patchOptional(int p) throws IOException {
+            if (u2(p) != 0) set(p, copy(u2(p)));
+            return p + 2;
+        }
+
+        // A u2 count followed by that many indices
+        private int patchList(int p) throws IOException {
+            int entryCount = u2(p);
+            p += 2;
+            while (entryCount-- > 0) {
+                p = patch(p);
             }
+            return p;
         }
 
-        var attributeCount = input.getShort();
-        handleCodeAttributes(attributeCount, input, utf8Copy, cpb, classBodyOS);
-    }
+        private void set(int p, int index) {
+            addPatch(p, index);
+        }
 
-    private static void handleCodeAttributes(short attributeCount, ByteBuffer input, UTF8Container[] utf8Copy, ConstantPoolBuilder cpb, DataOutputStream classBodyOS) throws IOException {
-        while (attributeCount-- > 0) {
-            var nameIndex = input.getShort();
-            var name = utf8Copy[nameIndex];
-            cpb.insertUTF8(name);
-            var length = input.getInt();
-            if (name.equals(CommonNames.STACK_MAP_TABLE)) {
+        private void addPatch(int p, int value) {
+            if (patchCount + 2 > patches.length) patches = Arrays.copyOf(patches, Math.max(64, patches.length * 2));
+            patches[patchCount++] = p;
+            patches[patchCount++] = value;
+        }
 
-            } else {
-                classBodyOS.writeInt(length);
-                DataUtil.copyBytes(length, input, classBodyOS);
+        // Appends the body after the finished pool and patches it there, so it is written out only once
+        ByteBuffer finish() {
+            var out = pool.finish(bodyLength);
+            int base = out.position() - bodyStart;
+            out.put(in, bodyStart, bodyLength);
+            for (int i = 0; i < patchCount; i += 2) {
+                int p = patches[i];
+                if (p < 0) {
+                    out.put(base + ~p, (byte) patches[i + 1]);
+                } else {
+                    out.putShort(base + p, (short) patches[i + 1]);
+                }
             }
+            return out;
         }
-    }
 
-    private static void handleClassAttribute(
-            short attributesCount,
-            ByteBuffer input,
-            ConstantPoolTracker tracker,
-            UTF8Container[] utf8Copy,
-            MappingsSet mappingsSet,
-            ConstantPoolBuilder cpb,
-            DataOutputStream classBodyOS
-    ) throws IOException {
-        while (attributesCount-- > 0) {
-            // name index
-            var nameIndex = input.getShort();
-            var name = utf8Copy[nameIndex];
-            cpb.insertUTF8(name);
-
-            var length = input.getInt();
-            if (name.equals(CommonNames.SIGNATURE)) {
-                classBodyOS.writeInt(2);
-                var signature = utf8Copy[input.getShort()];
-                var newSignature = mappingsSet.remapFieldSignature(signature);
-                var newSignatureIndex = cpb.insertUTF8(newSignature);
-                classBodyOS.writeShort(newSignatureIndex);
-            } else if (name.equals(CommonNames.SOURCE_FILE)) {
-                input.getShort(); // original
-                var sourceClass = cpb.newThis.toString();
-                var start = sourceClass.lastIndexOf('/');
-                if (start == -1) start = 0;
-                var end = sourceClass.indexOf('$');
-                if (end == -1) end = sourceClass.length();
-                var newSource = new UTF8Container(sourceClass.substring(start + 1, end) + ".java");
-                classBodyOS.writeInt(2);
-                classBodyOS.writeShort(cpb.insertUTF8(newSource));
-            } else if (name.equals(CommonNames.INNER_CLASSES)) {
-                var innerCount = input.getShort();
-                classBodyOS.writeInt(length);
-                while (innerCount-- > 0) {
-                    // inner_class_info_index
-                    classBodyOS.writeShort(cpb.insertClass(utf8Copy[tracker.getClassContent(input.getShort())]));
-                    var outerInfo = input.getShort();
-                    if (outerInfo == 0) {
-                        classBodyOS.writeShort(0);
-                    } else {
-                        classBodyOS.writeShort(
-                                cpb.insertClass(utf8Copy[tracker.getClassContent(outerInfo)]));
-                    }
+        /**
+         * Copies an entry of the original pool that is used on its own, as opposed to the names and types of other
+         * entries which depend on where they are used.
+         */
+        private int copy(int index) throws IOException {
+            var result = copied[index];
+            if (result > 0) return result;
 
-                    var innerName = input.getShort();
-                    if (innerName == 0) {
-                        classBodyOS.writeShort(0);
-                    } else {
-                        classBodyOS.writeShort(cpb.insertUTF8(utf8Copy[tracker.getClassContent(outerInfo)]));
-                    }
+            var tag = tags[index];
+            int offset = offsets[index];
+            result = switch (tag) {
+                case CTags.UTF8 -> pool.utf8(utf8(index));
 
-                    classBodyOS.writeShort(input.getShort());
-                }
-            } else if (name.equals(CommonNames.ENCLOSING_METHOD)) {
-                classBodyOS.writeInt(4);
-                UTF8Container ownerClass = utf8Copy[tracker.getClassContent(input.getShort())];
-                classBodyOS.writeShort(cpb.insertClass(mappingsSet.remapClass(ownerClass)));
-                var nti = input.getShort();
-                if (nti == 0) {
-                    classBodyOS.writeShort(0);
-                } else {
-                    var ntNameIndex = tracker.getNameNT(nti);
-                    var ntName = utf8Copy[ntNameIndex];
-                    var ntDesc = utf8Copy[tracker.getDescIndex(ntNameIndex)];
-                    var newName = mappingsSet.remapMethod(ownerClass, ntName, ntDesc);
-                    var newDesc = mappingsSet.remapDescriptor(ntDesc);
-                    classBodyOS.writeShort(cpb.insertNT(newName, newDesc));
+                case CTags.INTEGER, CTags.FLOAT -> pool.int32(tag, DataUtil.readInt(in, offset));
+
+                case CTags.LONG, CTags.DOUBLE -> pool.int64(tag, (long) DataUtil.readInt(in, offset) << 32 | DataUtil.readInt(in, offset + 4) & 0xFFFFFFFFL);
+
+                case CTags.FIELD, CTags.METHOD, CTags.INTERFACE_METHOD -> memberRef(index);
+
+                case CTags.MODULE -> pool.entry(tag, pool.utf8(mappingsSet.remapModule(utf8(u2(offset)))), 0);
+
+                case CTags.PACKAGE -> pool.entry(tag, pool.utf8(mappingsSet.remapPackage(utf8(u2(offset)))), 0);
+
+                case CTags.INVOKE_DYNAMIC -> {
+                    int nameAndType = u2(offset + 2);
+                    var desc = utf8(u2(offsets[nameAndType] + 2));
+                    var name = invokeDynamicName(u2(offset), u2(offsets[nameAndType]), desc);
+                    yield pool.entry(tag, u2(offset), pool.nameAndType(name, mappingsSet.remapDescriptor(desc)));
                 }
-            } else if (name.equals(CommonNames.PERMITTED_SUBCLASSES) || name.equals(CommonNames.NEST_MEMBERS)) {
-                classBodyOS.writeInt(length);
-                var entryCount = input.getShort();
-                classBodyOS.writeShort(entryCount);
-                while (entryCount-- > 0) {
-                    classBodyOS.writeShort(cpb.insertClass(mappingsSet.remapClass(utf8Copy[input.getShort()])));
+
+                case CTags.CLASS, CTags.STRING, CTags.METHOD_TYPE, CTags.METHOD_HANDLE, CTags.DYNAMIC -> {
+                    var operands = loadableOperands(index);
+                    yield pool.entry(tag, operands >>> 16, operands & 0xFFFF);
                 }
-            } else if (name.equals(CommonNames.NEST_HOST)) {
-                classBodyOS.writeInt(2);
-                classBodyOS.writeShort(cpb.insertClass(mappingsSet.remapClass(utf8Copy[tracker.getClassContent(input.getShort())])));
-            } else if (name.equals(CommonNames.BOOTSTRAP_METHODS)) {
-                classBodyOS.writeInt(length);
-                var methodCount = input.getShort();
-                classBodyOS.writeShort(methodCount);
-                while (methodCount-- > 0) {
-                    var ref = input.getShort();
-                    classBodyOS.writeShort(cpb.copyMethodHandle(input, ref, utf8Copy, mappingsSet, tracker));
+
+                default -> throw new IllegalStateException("Constant pool tag " + tag + " can't be used on its own");
+            };
+            copied[index] = result;
+            return result;
+        }
+
+        // The operands in the new pool of a loadable entry other than a number, packed into the upper and lower half
+        private int loadableOperands(int index) throws IOException {
+            int offset = offsets[index];
+            return switch (tags[index]) {
+                case CTags.CLASS -> pool.utf8(remapClassName(u2(offset))) << 16;
+
+                case CTags.STRING -> pool.utf8(utf8(u2(offset))) << 16;
+
+                case CTags.METHOD_TYPE -> pool.utf8(mappingsSet.remapDescriptor(utf8(u2(offset)))) << 16;
+
+                case CTags.METHOD_HANDLE -> (in[offset] & 0xFF) << 16 | copy(u2(offset + 1));
+
+                case CTags.DYNAMIC -> {
+                    // Dynamic constants are named freely by their bootstrap, only the type refers to classes
+                    int nameAndType = u2(offset + 2);
+                    var name = utf8(u2(offsets[nameAndType]));
+                    var desc = mappingsSet.remapDescriptor(utf8(u2(offsets[nameAndType] + 2)));
+                    yield u2(offset) << 16 | pool.nameAndType(name, desc);
                 }
-                var argumentCount = input.getShort();
-                classBodyOS.writeShort(argumentCount);
-                while (argumentCount-- > 0) {
 
+                default -> throw new IllegalStateException("Constant pool tag " + tags[index] + " is not loadable");
+            };
+        }
+
+        private int memberRef(int index) throws IOException {
+            int offset = offsets[index];
+            int classIndex = u2(offset);
+            int nameAndType = u2(offset + 2);
+            int nameIndex = u2(offsets[nameAndType]);
+            int descIndex = u2(offsets[nameAndType] + 2);
+
+            memberProbe.owner.setUtf8(in, offsets[u2(offsets[classIndex])]);
+            memberProbe.name.setUtf8(in, offsets[nameIndex]);
+            memberProbe.desc.setUtf8(in, offsets[descIndex]);
+            UTF8Container newName;
+            if (tags[index] == CTags.FIELD) {
+                newName = mappingsSet.remapFieldOrNull(memberProbe);
+                if (newName == null) {
+                    newName = ClassFileRemapper.remapInheritedField(classInfoReq, mappingsSet, memberProbe, utf8(u2(offsets[classIndex])));
                 }
             } else {
-                classBodyOS.writeInt(length);
-                DataUtil.copyBytes(length, input, classBodyOS);
+                newName = mappingsSet.remapMethodOrNull(memberProbe);
+                if (newName == null) {
+                    newName = remapInheritedMethod(utf8(u2(offsets[classIndex])), utf8(nameIndex), utf8(descIndex));
+                }
             }
+            if (newName == null) newName = utf8(nameIndex);
+
+            var newDesc = mappingsSet.remapDescriptor(utf8(descIndex));
+            return pool.entry(tags[index], copy(classIndex), pool.nameAndType(newName, newDesc));
         }
-    }
 
-    private static class ConstantPoolBuilder {
-        private final UTF8Container newThis;
-        private final DataOutputStream os;
-        private short nextIndex = 1;
+        // Calls name the class they are made through, which may only inherit the method. The pool no longer shares the
+        // name with the declaration, so the hierarchy is searched the same way as for methods this class declares.
+        private UTF8Container remapInheritedMethod(UTF8Container owner, UTF8Container name, UTF8Container desc) {
+            if (name.startsWith('<') || owner.startsWith('[') || owner.startsWithJava()) return null;
+            if (owner.equals(thisClass)) {
+                if (propagated || superClass == null) return null;
+                return ClassFileRemapper.remapSelfMethod(classInfoReq, mappingsSet, memberProbe, name, desc, superClass, interfaces);
+            }
+            if (!classInfoReq.lookupReferenceOwners() || mappingsSet.isPropagated(owner)) return null;
+
+            var struct = classInfoReq.lookupClassInfo(owner.compact());
+            if (struct == null) return null;
+            // The super class always comes first
+            var parents = struct.superAndInterfaceClasses();
+            if (parents.isEmpty()) return null;
+            var ownerInterfaces = parents.subList(1, parents.size()).toArray(new UTF8Container[0]);
+            return ClassFileRemapper.remapSelfMethod(classInfoReq, mappingsSet, memberProbe, name, desc, parents.get(0), ownerInterfaces);
+        }
 
-        private final HashMap<UTF8Container, Short> utf8Tracker = new HashMap<>();
-        private final HashMap<Short, Short> classTracker = new HashMap<>();
-        private final HashMap<UTF8Container, Short> ntTracker = new HashMap<>();
+        // Lambdas are named after the method they implement, which belongs to the interface they return
+        private UTF8Container invokeDynamicName(int bootstrapIndex, int nameIndex, UTF8Container desc) {
+            var name = utf8(nameIndex);
+            if (bootstrapOffsets == null || bootstrapIndex >= bootstrapOffsets.length) return name;
+
+            int p = bootstrapOffsets[bootstrapIndex];
+            int handle = u2(p);
+            if (u2(p + 2) == 0 || tags[handle] != CTags.METHOD_HANDLE) return name;
+            int owner = u2(offsets[u2(offsets[u2(offsets[handle] + 1)])]);
+            if (!utf8(owner).equals(CommonNames.LAMBDA_METAFACTORY)) return name;
+
+            int samType = u2(p + 4);
+            var data = desc.getData();
+            int returnStart = DataUtil.indexOf(data, (byte) ')', 0) + 1;
+            if (tags[samType] != CTags.METHOD_TYPE || data[returnStart] != 'L') return name;
+
+            var functionalInterface = new UTF8Container(Arrays.copyOfRange(data, returnStart + 1, data.length - 1));
+            var newName = mappingsSet.remapMethodOrNull(functionalInterface, name, utf8(u2(offsets[samType])));
+            return newName == null ? name : newName;
+        }
 
-        private ConstantPoolBuilder(UTF8Container newThis, DataOutputStream os) {
-            this.newThis = newThis;
-            this.os = os;
+        // Array classes are named by their descriptor
+        private UTF8Container remapClassName(int utf8Index) throws IOException {
+            var name = utf8(utf8Index);
+            if (name.startsWith('[')) return mappingsSet.remapDescriptor(name);
+            var remapped = remapClassOrNull(utf8Index);
+            return remapped == null ? name : remapped;
         }
 
-        public short insertUTF8(UTF8Container newThisClass) {
-            return utf8Tracker.computeIfAbsent(newThisClass, container -> {
-                try {
-                    os.writeByte(1);
-                    DataUtil.writeContainer(container, os);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-                return nextIndex++;
-            });
-        }
-
-        public short insertClass(UTF8Container className) {
-            var i = insertUTF8(className);
-            return classTracker.computeIfAbsent(i, container -> {
-                try {
-                    os.writeByte(7);
-                    os.writeShort(i);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-                return nextIndex++;
-            });
-        }
-
-        public short insertNT(UTF8Container name, UTF8Container type) {
-            var a = insertUTF8(name);
-            var b = insertUTF8(type);
-            return ntTracker.computeIfAbsent(name.append(type), container -> {
-                try {
-                    os.writeByte(12);
-                    os.writeShort(a);
-                    os.writeShort(b);
-                } catch (IOException e) {
-                    throw new RuntimeException(e);
-                }
-                return nextIndex++;
-            });
-        }
-
-        public short copyMethodHandle(ByteBuffer input, short index, UTF8Container[] utf8Copy, MappingsSet mappingsSet, ConstantPoolTracker tracker) throws IOException {
-            var currentOffset = tracker.getOffset(index);
-            var type = input.get(currentOffset);
-            os.writeByte(15);
-            os.writeByte(type);
-
-            var refIndex = input.getShort(currentOffset + 1);
-            var refOffset = tracker.getOffset(refIndex);
-            var tag = input.get(refOffset - 1);
-            var owner = utf8Copy[input.getShort(refOffset)];
-            var nt = input.getShort(refOffset + 2);
-            var name = utf8Copy[tracker.getNameNT(nt)];
-            var desc = utf8Copy[tracker.getDescIndex(nt)];
-            short newNt;
-            if (tag == 9) {
-                newNt = insertNT(mappingsSet.remapField(owner, name, desc), mappingsSet.remapDescriptor(desc));
-            } else {
-                newNt = insertNT(mappingsSet.remapMethod(owner, name, desc), mappingsSet.remapDescriptor(desc));
+        // Looked up through the probe, so that a class that isn't mapped is never copied out of the class file
+        private UTF8Container remapClassOrNull(int utf8Index) {
+            return mappingsSet.remapClassOrNull(nameProbe.setUtf8(in, offsets[utf8Index]));
+        }
+
+        private int attributeKind(int nameIndex) {
+            var kind = ATTRIBUTES.get(nameProbe.setUtf8(in, offsets[nameIndex]));
+            return kind == null ? 0 : kind;
+        }
+
+        private UTF8Container utf8(int index) {
+            var utf8 = utf8s[index];
+            if (utf8 == null) {
+                utf8 = UTF8Container.view(in, offsets[index] + 2, u2(offsets[index]));
+                utf8s[index] = utf8;
             }
-            os.writeShort(newNt);
+            return utf8;
+        }
+
+        private int u2(int p) {
+            return DataUtil.readShort(in, p);
+        }
+    }
+
+    private static final int LDC = 0x12;
+    private static final int LDC_W = 0x13;
+    private static final int LDC2_W = 0x14;
+    private static final int GETSTATIC = 0xB2;
+    private static final int PUTSTATIC = 0xB3;
+    private static final int GETFIELD = 0xB4;
+    private static final int PUTFIELD = 0xB5;
+    private static final int INVOKEVIRTUAL = 0xB6;
+    private static final int INVOKESPECIAL = 0xB7;
+    private static final int INVOKESTATIC = 0xB8;
+    private static final int INVOKEINTERFACE = 0xB9;
+    private static final int INVOKEDYNAMIC = 0xBA;
+    private static final int NEW = 0xBB;
+    private static final int ANEWARRAY = 0xBD;
+    private static final int CHECKCAST = 0xC0;
+    private static final int INSTANCEOF = 0xC1;
+    private static final int MULTIANEWARRAY = 0xC5;
+
+    /**
+     * The length of the instruction at {@code pc}, including its opcode. Switches are padded relative to
+     * {@code codeStart}.
+     */
+    static int instructionLength(byte[] code, int codeStart, int pc) {
+        int opcode = code[pc] & 0xFF;
+        switch (opcode) {
+            case 0x10, 0x12, 0x15, 0x16, 0x17, 0x18, 0x19, 0x36, 0x37, 0x38, 0x39, 0x3A, 0xA9, 0xBC -> {
+                return 2;
+            }
+            case 0x11, 0x13, 0x14, 0x84, 0xB2, 0xB3, 0xB4, 0xB5, 0xB6, 0xB7, 0xB8, 0xBB, 0xBD, 0xC0, 0xC1, 0xC6, 0xC7 -> {
+                return 3;
+            }
+            case 0xC5 -> {
+                return 4;
+            }
+            case 0xB9, 0xBA, 0xC8, 0xC9 -> {
+                return 5;
+            }
+            case 0xAA -> {
+                // tableswitch: default, low, high, then a jump for each value
+                int aligned = codeStart + ((pc - codeStart + 4) & ~3);
+                int low = DataUtil.readInt(code, aligned + 4);
+                int high = DataUtil.readInt(code, aligned + 8);
+                return aligned - pc + 12 + 4 * (high - low + 1);
+            }
+            case 0xAB -> {
+                // lookupswitch: default, count, then a match and jump for each
+                int aligned = codeStart + ((pc - codeStart + 4) & ~3);
+                return aligned - pc + 8 + 8 * DataUtil.readInt(code, aligned + 4);
+            }
+            case 0xC4 -> {
+                // wide, iinc has an extra two byte constant
+                return (code[pc + 1] & 0xFF) == 0x84 ? 6 : 4;
+            }
+            default -> {
+                if (opcode >= 0x99 && opcode <= 0xA8) return 3;
+                return 1;
+            }
+        }
+    }
+
+    /**
+     * The new constant pool, written straight into the output buffer as entries are first asked for. Entries are
+     * de-duplicated by their content.
+     */
+    private static final class ConstantPoolBuilder {
+        private OutputBufferPool bufferPool;
+        private ByteBuffer out;
+        private int nextIndex = 1;
+
+        private final Utf8Indices utf8Tracker = new Utf8Indices();
+        // Every other entry of up to four bytes, keyed by tag and content
+        private final LongIndices entryTracker = new LongIndices();
+        private final LongIndices longTracker = new LongIndices();
+        private final LongIndices doubleTracker = new LongIndices();
+
+        // Starts the output class file in a buffer from the pool, the entry count is filled in by finish
+        void begin(OutputBufferPool bufferPool, byte[] classFile) {
+            this.bufferPool = bufferPool;
+            nextIndex = 1;
+            clearTrackers();
+
+            out = bufferPool.acquire(classFile.length + (classFile.length >> 3) + 64);
+            //  u4  magic;
+            //  u2  minor_version;
+            //  u2  major_version;
+            out.put(classFile, 0, 8);
+            //  u2  constant_pool_count;
+            out.putShort((short) 0);
+        }
+
+        /**
+         * Fills in the entry count, and makes room for the rest of the class.
+         * @return The buffer to write the rest of the class to, positioned after the pool
+         */
+        ByteBuffer finish(int remaining) {
+            out.putShort(8, (short) nextIndex);
+            ensureCapacity(remaining);
+            return out;
+        }
+
+        void release() {
+            if (out != null) bufferPool.release(out);
+            out = null;
+            bufferPool = null;
+            // The UTF8 keys may be views into the class
+            clearTrackers();
+        }
+
+        private void clearTrackers() {
+            utf8Tracker.clear();
+            entryTracker.clear();
+            longTracker.clear();
+            doubleTracker.clear();
+        }
+
+        int utf8(UTF8Container content) {
+            int index = utf8Tracker.get(content);
+            if (index != 0) return index;
+
+            var length = content.length();
+            ensureCapacity(3 + length);
+            out.put(CTags.UTF8);
+            out.putShort((short) length);
+            content.copyTo(out);
+            utf8Tracker.putIfAbsent(content, nextIndex);
+            return nextIndex++;
+        }
+
+        int nameAndType(UTF8Container name, UTF8Container desc) {
+            int nameIndex = utf8(name);
+            int descIndex = utf8(desc);
+            return entry(CTags.NAME_AND_TYPE, nameIndex, descIndex);
+        }
+
+        /**
+         * Inserts an entry of one or two u2 operands, or a method handle with its kind as {@code a}.
+         */
+        int entry(byte tag, int a, int b) {
+            var key = (long) tag << 32 | (long) a << 16 | b;
+            int index = entryTracker.get(key);
+            if (index != 0) return index;
+
+            write(tag, a, b);
+            entryTracker.putIfAbsent(key, nextIndex);
+            return nextIndex++;
+        }
+
+        int int32(byte tag, int value) {
+            var key = (long) tag << 32 | value & 0xFFFFFFFFL;
+            int index = entryTracker.get(key);
+            if (index != 0) return index;
+
+            ensureCapacity(5);
+            out.put(tag);
+            out.putInt(value);
+            entryTracker.putIfAbsent(key, nextIndex);
             return nextIndex++;
         }
 
-        public short copyLoadable(ByteBuffer input, short index, UTF8Container[] utf8Copy, MappingsSet mappingsSet, ConstantPoolTracker tracker) {
-            var offset = tracker.getOffset(index);
-            var tag = input.get(offset - 1);
+        // Longs and doubles take up two indices
+        int int64(byte tag, long value) {
+            var tracker = tag == CTags.LONG ? longTracker : doubleTracker;
+            int index = tracker.get(value);
+            if (index != 0) return index;
+
+            ensureCapacity(9);
+            out.put(tag);
+            out.putLong(value);
+            tracker.putIfAbsent(value, nextIndex);
+            nextIndex += 2;
+            return nextIndex - 2;
+        }
+
+        /**
+         * Takes the next index for an entry whose content isn't known yet.
+         * @return The position to {@link #fill} later
+         */
+        int reserve(byte tag) {
+            int position = out.position();
+            write(tag, 0, 0);
+            nextIndex++;
+            return position;
+        }
+
+        void fill(int position, int index, byte tag, int a, int b) {
+            int end = out.position();
+            out.position(position);
+            write(tag, a, b);
+            out.position(end);
+            entryTracker.putIfAbsent((long) tag << 32 | (long) a << 16 | b, index);
+        }
+
+        private void write(byte tag, int a, int b) {
+            ensureCapacity(5);
+            out.put(tag);
             switch (tag) {
-                case 7 -> {
-                    return insertClass(utf8Copy[tracker.getClassContent(input.getShort(offset))]);
+                case CTags.CLASS, CTags.STRING, CTags.METHOD_TYPE, CTags.MODULE, CTags.PACKAGE -> out.putShort((short) a);
+                case CTags.METHOD_HANDLE -> {
+                    out.put((byte) a);
+                    out.putShort((short) b);
                 }
-
-                case 9, 10, 11 -> {
-                    
+                default -> {
+                    out.putShort((short) a);
+                    out.putShort((short) b);
                 }
             }
-            return nextIndex++;
+        }
+
+        // Positions written so far stay valid, a larger buffer gets the same content at the same offsets
+        private void ensureCapacity(int extra) {
+            out = bufferPool.ensureRemaining(out, extra);
+        }
+    }
+
+    /**
+     * Indices of new pool entries by a {@code long} key, open addressed so that nothing is boxed. An index of
+     * {@code 0} marks an empty slot, no entry can have it. Clearing only empties the slots that were filled, so the table
+     * is kept at the size of the largest pool seen.
+     */
+    private static final class LongIndices {
+        private long[] keys = new long[64];
+        private int[] indices = new int[64];
+        private int shift = Long.SIZE - 6;
+        // Filled slots, in the order they were filled
+        private int[] filled = new int[33];
+        private int size;
+
+        int get(long key) {
+            return indices[slotOf(key)];
+        }
+
+        void putIfAbsent(long key, int index) {
+            int slot = slotOf(key);
+            if (indices[slot] != 0) return;
+            keys[slot] = key;
+            indices[slot] = index;
+            filled[size++] = slot;
+            if (size * 2 > keys.length) rehash();
+        }
+
+        void clear() {
+            for (int i = 0; i < size; i++) {
+                indices[filled[i]] = 0;
+            }
+            size = 0;
+        }
+
+        // Returns the slot holding the key, or the empty slot it would go in
+        private int slotOf(long key) {
+            int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+            while (indices[slot] != 0 && keys[slot] != key) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            return slot;
+        }
+
+        private void rehash() {
+            var oldKeys = keys;
+            var oldIndices = indices;
+            var oldFilled = filled;
+            int oldSize = size;
+            keys = new long[oldKeys.length * 2];
+            indices = new int[oldIndices.length * 2];
+            filled = new int[keys.length / 2 + 1];
+            shift--;
+            size = 0;
+            for (int i = 0; i < oldSize; i++) {
+                putIfAbsent(oldKeys[oldFilled[i]], oldIndices[oldFilled[i]]);
+            }
+        }
+    }
+
+    /**
+     * Indices of new {@code CONSTANT_Utf8_info} entries by their content, the same way as {@link LongIndices}. Clearing
+     * also drops the keys, which may be views into the class.
+     */
+    private static final class Utf8Indices {
+        private UTF8Container[] keys = new UTF8Container[256];
+        private int[] indices = new int[256];
+        private int shift = Integer.SIZE - 8;
+        private int[] filled = new int[129];
+        private int size;
+
+        int get(UTF8Container key) {
+            return indices[slotOf(key)];
+        }
+
+        void putIfAbsent(UTF8Container key, int index) {
+            int slot = slotOf(key);
+            if (indices[slot] != 0) return;
+            keys[slot] = key;
+            indices[slot] = index;
+            filled[size++] = slot;
+            if (size * 2 > keys.length) rehash();
+        }
+
+        void clear() {
+            for (int i = 0; i < size; i++) {
+                keys[filled[i]] = null;
+                indices[filled[i]] = 0;
+            }
+            size = 0;
+        }
+
+        private int slotOf(UTF8Container key) {
+            int slot = (key.hashCode() * 0x9E3779B9) >>> shift;
+            while (indices[slot] != 0 && !keys[slot].equals(key)) {
+                slot = (slot + 1) & (keys.length - 1);
+            }
+            return slot;
+        }
+
+        private void rehash() {
+            var oldKeys = keys;
+            var oldIndices = indices;
+            var oldFilled = filled;
+            int oldSize = size;
+            keys = new UTF8Container[oldKeys.length * 2];
+            indices = new int[oldIndices.length * 2];
+            filled = new int[keys.length / 2 + 1];
+            shift--;
+            size = 0;
+            for (int i = 0; i < oldSize; i++) {
+                putIfAbsent(oldKeys[oldFilled[i]], oldIndices[oldFilled[i]]);
+            }
         }
     }
 }
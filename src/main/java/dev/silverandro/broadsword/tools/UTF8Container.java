@@ -4,6 +4,7 @@
 
 package dev.silverandro.broadsword.tools;
 
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
@@ -11,26 +12,83 @@ import java.util.Arrays;
  * A representation of a UTF-8 sequence of bytes. This class is used throughout broadsword to both make explicit the
  * encoding of this data and to avoid array copies in several locations. The data stored in this class is mutable and
  * must be explicitly copied when required.
+ * <p>
+ * A container can also be a {@link #view} of part of a larger array, such as an entry inside a class file. Comparing,
+ * hashing, and copying a view works on the larger array directly, only {@link #getData()} has to copy the bytes out.
  */
 public final class UTF8Container {
     private final byte[] data;
+    private final int offset;
+    private final int length;
     private int hash;
     private boolean hashIsZero;
+    // The bytes of a view, copied out the first time they are asked for
+    private byte[] copy;
 
-    private static final byte[] JAVA = new byte[] {'j', 'a', 'v', 'a'};
+    private static final byte[] JAVA = new byte[] {'j', 'a', 'v', 'a', '/'};
 
     public UTF8Container(byte[] data) {
-        this.data = data;
+        this(data, 0, data.length);
     }
     public UTF8Container(String value) { this(value.getBytes(StandardCharsets.UTF_8)); }
 
+    private UTF8Container(byte[] data, int offset, int length) {
+        this.data = data;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    /**
+     * Creates a container over {@code data[offset, offset + length)} without copying it. The array must not change while
+     * the view is in use. Views aren't safe to share between threads or keep past the array they point into, use
+     * {@link #compact()} for anything that outlives the work the view was made for.
+     */
+    public static UTF8Container view(byte[] data, int offset, int length) {
+        return new UTF8Container(data, offset, length);
+    }
+
+    /**
+     * @return The content of this container as an array of exactly {@link #length()} bytes. For a view, this is a copy
+     * made the first time it is asked for.
+     */
     public byte[] getData() {
-        return data;
+        if (!isView()) return data;
+        var bytes = copy;
+        if (bytes == null) {
+            bytes = Arrays.copyOfRange(data, offset, offset + length);
+            copy = bytes;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return This container if it isn't a view, otherwise a new container holding a copy of its content
+     */
+    public UTF8Container compact() {
+        return isView() ? new UTF8Container(getData()) : this;
+    }
+
+    private boolean isView() {
+        return offset != 0 || length != data.length;
+    }
+
+    /**
+     * Copies the content into {@code dest}, starting at {@code destOffset}.
+     */
+    public void copyTo(byte[] dest, int destOffset) {
+        System.arraycopy(data, offset, dest, destOffset, length);
+    }
+
+    /**
+     * Writes the content at the position of the buffer, without copying a view first.
+     */
+    public void copyTo(ByteBuffer dest) {
+        dest.put(data, offset, length);
     }
 
     @Override
     public String toString() {
-        return new String(data, StandardCharsets.UTF_8);
+        return new String(data, offset, length, StandardCharsets.UTF_8);
     }
 
     @Override
@@ -38,14 +96,14 @@ public final class UTF8Container {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         UTF8Container that = (UTF8Container) o;
-        return Arrays.equals(data, that.data);
+        return Arrays.equals(data, offset, offset + length, that.data, that.offset, that.offset + that.length);
     }
 
     @Override
     public int hashCode() {
         int h = hash;
         if (h == 0 && !hashIsZero) {
-            h = Arrays.hashCode(data);
+            h = hashOf(data, offset, length);
             if (h == 0) {
                 hashIsZero = true;
             } else {
@@ -55,22 +113,45 @@ public final class UTF8Container {
         return h;
     }
 
+    /**
+     * Computes the hash a container holding exactly {@code data[offset, offset + length)} would have, without copying.
+     */
+    public static int hashOf(byte[] data, int offset, int length) {
+        int h = 1;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            h = 31 * h + data[i];
+        }
+        return h;
+    }
+
+    /**
+     * Checks if this container holds exactly the bytes {@code other[offset, offset + length)}.
+     */
+    public boolean contentEquals(byte[] other, int offset, int length) {
+        return Arrays.equals(data, this.offset, this.offset + this.length, other, offset, offset + length);
+    }
+
     public boolean startsWith(char c) {
-        return data[0] == c;
+        return length > 0 && data[offset] == c;
     }
 
-    boolean startsWithJava() {
-        return Arrays.mismatch(data, JAVA) < 0;
+    /**
+     * Checks if this names something in {@code java/} or a package below it, which is never remapped and never needs
+     * its hierarchy looked up. Other packages that start with {@code java}, such as {@code javax/}, are not included.
+     */
+    public boolean startsWithJava() {
+        return length >= JAVA.length && Arrays.equals(data, offset, offset + JAVA.length, JAVA, 0, JAVA.length);
     }
 
     public int length() {
-        return data.length;
+        return length;
     }
 
     public UTF8Container append(UTF8Container o) {
-        byte[] out = new byte[length() + o.length()];
-        System.arraycopy(data, 0, out, 0, length());
-        System.arraycopy(o.data, 0, out, length() + 1, o.length());
+        byte[] out = new byte[length + o.length];
+        copyTo(out, 0);
+        o.copyTo(out, length);
         return new UTF8Container(out);
     }
 }
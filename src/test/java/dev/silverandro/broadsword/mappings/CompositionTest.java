@@ -0,0 +1,34 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.tools.UTF8Container;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class CompositionTest {
+    @Test
+    public void composesUntypedFieldsThroughTypedOnes() {
+        var first = new CustomMappingsSet(false);
+        first.putClass(u("a"), u("Mid"));
+        first.putField(u("a"), u("f"), null, u("midField"));
+        var second = new CustomMappingsSet();
+        second.putClass(u("Mid"), u("Named"));
+        second.putField(u("Mid"), u("midField"), u("I"), u("namedField"));
+
+        var composed = MappingsSet.compose(first, second);
+        var chained = second.remapField(first.remapClass(u("a")), first.remapField(u("a"), u("f"), u("I")), u("I"));
+        assertEquals(u("namedField"), chained);
+        assertEquals(chained, composed.remapField(u("a"), u("f"), u("I")));
+        // Already followed through from the first set, not carried over a second time under its middle name
+        assertNull(composed.remapFieldOrNull(u("a"), u("midField"), u("I")));
+    }
+
+    private static UTF8Container u(String value) {
+        return new UTF8Container(value);
+    }
+}
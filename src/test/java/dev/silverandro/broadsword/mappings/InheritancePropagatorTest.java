@@ -0,0 +1,41 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.mappings;
+
+import dev.silverandro.broadsword.data.ClassMappingStruct;
+import dev.silverandro.broadsword.lookups.ClassMappingLookup;
+import dev.silverandro.broadsword.tools.UTF8Container;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class InheritancePropagatorTest {
+    @Test
+    public void propagatesEveryMappedOverload() {
+        var mappings = new CustomMappingsSet();
+        mappings.putMethod(u("Tree"), u("accept"), u("(LVisitor;)V"), u("acceptVisitor"));
+        mappings.putMethod(u("Tree"), u("accept"), u("(LScanner;I)V"), u("acceptScanner"));
+
+        // A struct only keeps one descriptor per name, here neither of the mapped ones
+        var structs = Map.of(
+                u("Tree"), new ClassMappingStruct(List.of(u("java/lang/Object")), Map.of(u("accept"), u("()V"))),
+                u("Ident"), new ClassMappingStruct(List.of(u("Tree")), Map.of(u("accept"), u("()V")))
+        );
+        ClassMappingLookup lookup = structs::get;
+        mappings.propagateMethods(List.of(u("Tree"), u("Ident")), lookup);
+
+        assertEquals(u("acceptVisitor"), mappings.remapMethodOrNull(u("Ident"), u("accept"), u("(LVisitor;)V")));
+        assertEquals(u("acceptScanner"), mappings.remapMethodOrNull(u("Ident"), u("accept"), u("(LScanner;I)V")));
+        assertNull(mappings.remapMethodOrNull(u("Ident"), u("accept"), u("()V")));
+    }
+
+    private static UTF8Container u(String value) {
+        return new UTF8Container(value);
+    }
+}
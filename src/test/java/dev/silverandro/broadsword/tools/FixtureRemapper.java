@@ -0,0 +1,73 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.tools;
+
+import dev.silverandro.broadsword.data.ClassMappingStruct;
+import dev.silverandro.broadsword.lookups.ClassMappingLookup;
+import dev.silverandro.broadsword.mappings.CustomMappingsSet;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Remaps classes, keyed by their internal names, with {@link TrueClassFileRemapper} and the mappings used by
+ * {@link TrueClassFileRemapperTest}. A class of its own so that a remapped copy of the library can run it as well.
+ */
+public final class FixtureRemapper implements Function<Map<String, byte[]>, Map<String, byte[]>> {
+    private static final String FIXTURES = "dev/silverandro/broadsword/tools/RemapFixtures$";
+    private static final String MAPPINGS = "dev/silverandro/broadsword/mappings/";
+
+    @Override
+    public Map<String, byte[]> apply(Map<String, byte[]> classes) {
+        var mappings = new CustomMappingsSet();
+        mappings.putClass(u(FIXTURES + "Color"), u(FIXTURES + "Shade"));
+        mappings.putClass(u(FIXTURES + "Tag"), u(FIXTURES + "Label"));
+        mappings.putMethod(u(FIXTURES + "Operation"), u("apply"), u("(I)I"), u("run"));
+        mappings.putMethod(u(FIXTURES + "Parent"), u("value"), u("()I"), u("renamedValue"));
+        mappings.putField(u(FIXTURES + "Point"), u("x"), u("I"), u("first"));
+        mappings.putField(u(FIXTURES + "Parent"), u("count"), u("I"), u("renamedCount"));
+        // Only matter when the library itself is remapped
+        mappings.putClass(u(MAPPINGS + "SymbolTable"), u(MAPPINGS + "Symbols"));
+        mappings.putClass(u(MAPPINGS + "FlatTable"), u(MAPPINGS + "Flat"));
+        mappings.putMethod(u(MAPPINGS + "SymbolTable"), u("intern"), u("(Ldev/silverandro/broadsword/tools/UTF8Container;)I"), u("internSymbol"));
+        mappings.putField(u(MAPPINGS + "NameMap"), u("symbols"), u("L" + MAPPINGS + "SymbolTable;"), u("table"));
+
+        var structs = new HashMap<UTF8Container, ClassMappingStruct>();
+        classes.forEach((name, classFile) -> structs.put(u(name), ClassStructExtractor.extract(classFile)));
+        // Anything outside of the input, such as the JDK, is unknown
+        var lookup = new ClassMappingLookup() {
+            @Override
+            public ClassMappingStruct lookupClassInfo(UTF8Container className) {
+                return structs.get(className);
+            }
+
+            @Override
+            public boolean lookupReferenceOwners() {
+                return true;
+            }
+        };
+
+        var remapped = new HashMap<String, byte[]>();
+        for (var classFile : classes.values()) {
+            try {
+                TrueClassFileRemapper.remapClassBytes(classFile, mappings, lookup, OutputBufferPool.sharedHeap(), (className, buffer) -> {
+                    var bytes = new byte[buffer.remaining()];
+                    buffer.get(bytes);
+                    remapped.put(className.toString(), bytes);
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return remapped;
+    }
+
+    private static UTF8Container u(String value) {
+        return new UTF8Container(value);
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.tools;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.function.Supplier;
+
+/**
+ * Classes remapped by {@link TrueClassFileRemapperTest}, each covering something the remapper has to get right for the
+ * class to still load and behave the same. Nothing here is private, so that no access between nest members depends on
+ * the nest attributes.
+ */
+final class RemapFixtures {
+    private RemapFixtures() {}
+
+    // apply is mapped, so lambdas and method references implementing it must be renamed too
+    public interface Operation {
+        int apply(int value);
+    }
+
+    // value and count are mapped here, but only ever used through Child
+    public static class Parent {
+        public int count = 7;
+
+        public int value() {
+            return 42;
+        }
+    }
+
+    public static class Child extends Parent {}
+
+    // x is mapped, which the record's bootstrap handles have to follow
+    public record Point(int x, int y) {}
+
+    // Mapped, so the enum constant in the annotation below has to follow
+    public enum Color {
+        RED,
+        GREEN
+    }
+
+    // Mapped
+    @Retention(RetentionPolicy.RUNTIME)
+    public @interface Tag {
+        Color value();
+    }
+
+    @Tag(Color.GREEN)
+    public static class Tagged {}
+
+    /**
+     * Describes everything above, run both before and after remapping.
+     */
+    public static class Entry implements Supplier<String> {
+        @Override
+        public String get() {
+            Operation increment = value -> value + 1;
+            Operation twice = Entry::twice;
+            var point = new Point(1, 2);
+            return increment.apply(1) + " " + twice.apply(4) + " " + new Child().value() + " " + new Child().count + " " + point + " "
+                    + point.equals(new Point(1, 2)) + " " + Color.valueOf("GREEN") + " " + Color.values().length + " "
+                    + Tagged.class.getAnnotation(Tag.class).value() + " " + sum();
+        }
+
+        static int twice(int value) {
+            return value * 2;
+        }
+
+        // Enough constants that the pool outgrows what ldc can reach, and the remapper has to keep the ldc targets low
+        static int sum() {
+            int[] values = {
+                100_000, 100_001, 100_002, 100_003, 100_004, 100_005, 100_006, 100_007, 100_008, 100_009,
+                100_010, 100_011, 100_012, 100_013, 100_014, 100_015, 100_016, 100_017, 100_018, 100_019,
+                100_020, 100_021, 100_022, 100_023, 100_024, 100_025, 100_026, 100_027, 100_028, 100_029,
+                100_030, 100_031, 100_032, 100_033, 100_034, 100_035, 100_036, 100_037, 100_038, 100_039,
+                100_040, 100_041, 100_042, 100_043, 100_044, 100_045, 100_046, 100_047, 100_048, 100_049,
+                100_050, 100_051, 100_052, 100_053, 100_054, 100_055, 100_056, 100_057, 100_058, 100_059,
+                100_060, 100_061, 100_062, 100_063, 100_064, 100_065, 100_066, 100_067, 100_068, 100_069,
+                100_070, 100_071, 100_072, 100_073, 100_074, 100_075, 100_076, 100_077, 100_078, 100_079,
+                100_080, 100_081, 100_082, 100_083, 100_084, 100_085, 100_086, 100_087, 100_088, 100_089,
+                100_090, 100_091, 100_092, 100_093, 100_094, 100_095, 100_096, 100_097, 100_098, 100_099,
+                100_100, 100_101, 100_102, 100_103, 100_104, 100_105, 100_106, 100_107, 100_108, 100_109,
+                100_110, 100_111, 100_112, 100_113, 100_114, 100_115, 100_116, 100_117, 100_118, 100_119,
+                100_120, 100_121, 100_122, 100_123, 100_124, 100_125, 100_126, 100_127, 100_128, 100_129,
+                100_130, 100_131, 100_132, 100_133, 100_134, 100_135, 100_136, 100_137, 100_138, 100_139,
+                100_140, 100_141, 100_142, 100_143, 100_144, 100_145, 100_146, 100_147, 100_148, 100_149,
+                100_150, 100_151, 100_152, 100_153, 100_154, 100_155, 100_156, 100_157, 100_158, 100_159,
+                100_160, 100_161, 100_162, 100_163, 100_164, 100_165, 100_166, 100_167, 100_168, 100_169,
+                100_170, 100_171, 100_172, 100_173, 100_174, 100_175, 100_176, 100_177, 100_178, 100_179,
+                100_180, 100_181, 100_182, 100_183, 100_184, 100_185, 100_186, 100_187, 100_188, 100_189,
+                100_190, 100_191, 100_192, 100_193, 100_194, 100_195, 100_196, 100_197, 100_198, 100_199,
+                100_200, 100_201, 100_202, 100_203, 100_204, 100_205, 100_206, 100_207, 100_208, 100_209,
+                100_210, 100_211, 100_212, 100_213, 100_214, 100_215, 100_216, 100_217, 100_218, 100_219,
+                100_220, 100_221, 100_222, 100_223, 100_224, 100_225, 100_226, 100_227, 100_228, 100_229,
+                100_230, 100_231, 100_232, 100_233, 100_234, 100_235, 100_236, 100_237, 100_238, 100_239,
+                100_240, 100_241, 100_242, 100_243, 100_244, 100_245, 100_246, 100_247, 100_248, 100_249,
+                100_250, 100_251, 100_252, 100_253, 100_254, 100_255, 100_256, 100_257, 100_258, 100_259,
+                100_260, 100_261, 100_262, 100_263, 100_264, 100_265, 100_266, 100_267, 100_268, 100_269,
+                100_270, 100_271, 100_272, 100_273, 100_274, 100_275, 100_276, 100_277, 100_278, 100_279,
+                100_280, 100_281, 100_282, 100_283, 100_284, 100_285, 100_286, 100_287, 100_288, 100_289,
+                100_290, 100_291, 100_292, 100_293, 100_294, 100_295, 100_296, 100_297, 100_298, 100_299
+            };
+            int sum = 0;
+            for (var value : values) {
+                sum += value;
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2026 SilverAndro. All Rights Reserved
+ */
+
+package dev.silverandro.broadsword.tools;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Remaps real class files with {@link TrueClassFileRemapper}, then loads the result into its own class loader. The JVM
+ * verifies every class it loads that way, so a bad constant pool reference or a missed rename fails the test.
+ */
+public class TrueClassFileRemapperTest {
+    private static final String FIXTURES = "dev/silverandro/broadsword/tools/RemapFixtures";
+
+    @Test
+    public void remappedFixturesBehaveTheSame() throws Exception {
+        var remapped = new FixtureRemapper().apply(fixtures());
+        assertNotNull(remapped.get(FIXTURES + "$Shade"));
+        assertNotNull(remapped.get(FIXTURES + "$Label"));
+        assertNull(remapped.get(FIXTURES + "$Color"));
+
+        var loader = new IsolatedLoader(remapped);
+        var entry = (Supplier<?>) loader.loadClass(RemapFixtures.Entry.class.getName()).getConstructor().newInstance();
+        assertEquals(new RemapFixtures.Entry().get(), entry.get());
+    }
+
+    @Test
+    public void remappedLibraryRemapsTheSame() throws Exception {
+        var library = new HashMap<String, byte[]>();
+        var root = Path.of(TrueClassFileRemapper.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        try (var walk = Files.walk(root)) {
+            for (var file : walk.filter(path -> path.toString().endsWith(".class")).toList()) {
+                var name = root.relativize(file).toString().replace('\\', '/');
+                // Benchmarks need dependencies that aren't there at test time
+                if (name.startsWith("dev/silverandro/broadsword/bench/")) continue;
+                library.put(name.substring(0, name.length() - ".class".length()), Files.readAllBytes(file));
+            }
+        }
+        for (var type : FixtureRemapper.class.getNestMembers()) {
+            library.put(internalName(type), classFile(type));
+        }
+
+        var remapped = new FixtureRemapper().apply(library);
+        assertNotNull(remapped.get("dev/silverandro/broadsword/mappings/Symbols"));
+        assertNull(remapped.get("dev/silverandro/broadsword/mappings/SymbolTable"));
+
+        var loader = new IsolatedLoader(remapped);
+        // Initializing every class links it, which is when it is verified
+        for (var name : remapped.keySet()) {
+            Class.forName(name.replace('/', '.'), true, loader);
+        }
+
+        @SuppressWarnings("unchecked")
+        var remappedRemapper = (Function<Map<String, byte[]>, Map<String, byte[]>>) loader
+                .loadClass(FixtureRemapper.class.getName())
+                .getConstructor()
+                .newInstance();
+        var expected = new FixtureRemapper().apply(fixtures());
+        var actual = remappedRemapper.apply(fixtures());
+        assertEquals(expected.keySet(), actual.keySet());
+        for (var name : expected.keySet()) {
+            assertArrayEquals(expected.get(name), actual.get(name), name);
+        }
+    }
+
+    private static Map<String, byte[]> fixtures() throws IOException {
+        var classes = new HashMap<String, byte[]>();
+        for (var fixture : RemapFixtures.class.getNestMembers()) {
+            classes.put(internalName(fixture), classFile(fixture));
+        }
+        return classes;
+    }
+
+    private static String internalName(Class<?> type) {
+        return type.getName().replace('.', '/');
+    }
+
+    private static byte[] classFile(Class<?> type) throws IOException {
+        try (InputStream input = type.getResourceAsStream("/" + internalName(type) + ".class")) {
+            assertNotNull(input, type.getName());
+            return input.readAllBytes();
+        }
+    }
+
+    // Defines the given classes itself, even where the parent has a class of the same name
+    private static final class IsolatedLoader extends ClassLoader {
+        private final Map<String, byte[]> classes;
+
+        IsolatedLoader(Map<String, byte[]> classes) {
+            super(TrueClassFileRemapperTest.class.getClassLoader());
+            this.classes = classes;
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            var classFile = classes.get(name.replace('.', '/'));
+            if (classFile == null) return super.loadClass(name, resolve);
+            synchronized (getClassLoadingLock(name)) {
+                var loaded = findLoadedClass(name);
+                if (loaded == null) loaded = defineClass(name, classFile, 0, classFile.length);
+                if (resolve) resolveClass(loaded);
+                return loaded;
+            }
+        }
+    }
+}